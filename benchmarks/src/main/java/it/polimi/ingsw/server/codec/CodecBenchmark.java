@@ -0,0 +1,83 @@
+package it.polimi.ingsw.server.codec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+// Compares the message codecs with plain Java serialization, which is what RMI would otherwise use for the
+// same records. Wire sizes do not vary per run, so setUp prints them once per parameter combination.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"binary", "json", "java"})
+    public String codec;
+
+    @Param({"chat", "roomChat", "stateAck"})
+    public String messageType;
+
+    private MessageCodec messageCodec;
+    private Message message;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException, ClassNotFoundException {
+        messageCodec = switch (codec) {
+            case "binary" -> MessageCodec.BINARY;
+            case "json" -> MessageCodec.JSON;
+            default -> null;
+        };
+        message = switch (messageType) {
+            case "chat" -> new ChatMessage("Anyone up for another round? I'll host this time.");
+            case "roomChat" -> new RoomChatMessage("lobby-3", "ready when you are");
+            default -> new StateAck("game-42", 1_234_567);
+        };
+        encoded = encode();
+        if (!message.equals(decode())) {
+            throw new IllegalStateException(codec + " does not round-trip " + message);
+        }
+        System.out.println();
+        System.out.println("Wire size " + codec + "/" + messageType + ": " + encoded.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        if (messageCodec != null) {
+            return messageCodec.encode(message);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(message);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Message decode() throws IOException, ClassNotFoundException {
+        if (messageCodec != null) {
+            return messageCodec.decode(encoded);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(encoded))) {
+            return (Message) in.readObject();
+        }
+    }
+}
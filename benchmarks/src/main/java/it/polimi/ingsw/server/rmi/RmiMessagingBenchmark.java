@@ -0,0 +1,106 @@
+package it.polimi.ingsw.server.rmi;
+
+import it.polimi.ingsw.server.admission.AdmissionControl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Callbacks are exported in the same JVM but still go through real RMI calls over loopback.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RmiMessagingBenchmark {
+
+    private static final int RMI_PORT = 1099;
+    private static final String SERVICE_NAME = "GalaxyTruckerService";
+
+    @Param({"1", "4", "64"})
+    public int clients;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private Registry registry;
+    private RMIServer server;
+    private RemoteService remote;
+    private CountingClient[] callbacks;
+
+    private static final class CountingClient implements ProxyClient {
+        private final AtomicLong delivered;
+
+        private CountingClient(AtomicLong delivered) {
+            this.delivered = delivered;
+        }
+
+        @Override
+        public void showMessage(String message) {
+            delivered.incrementAndGet();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        // The default per-client rate limit would throttle the sender to a few messages per second.
+        AdmissionControl.global().setMessagesPerSecond(0);
+        // No heartbeat and no coalescing, so every operation measures exactly one fan-out.
+        server = new RMIServer(2000, 3, 0, 0);
+        registry = LocateRegistry.createRegistry(RMI_PORT);
+        registry.rebind(SERVICE_NAME, server);
+        // Looked up through a registry stub so calls are marshalled instead of hitting the local object.
+        remote = (RemoteService) LocateRegistry.getRegistry("127.0.0.1", RMI_PORT).lookup(SERVICE_NAME);
+
+        callbacks = new CountingClient[clients];
+        for (int i = 0; i < clients; i++) {
+            callbacks[i] = new CountingClient(delivered);
+            remote.registerClient((ProxyClient) UnicastRemoteObject.exportObject(callbacks[i], 0));
+        }
+        awaitDelivered(clients);
+    }
+
+    @Benchmark
+    public void broadcastFanOut() throws Exception {
+        long target = delivered.get() + clients;
+        remote.broadcastMessage("benchmark");
+        awaitDelivered(target);
+    }
+
+    @Benchmark
+    public String sendMessageRoundTrip() throws Exception {
+        return remote.sendMessage("benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (CountingClient callback : callbacks) {
+            UnicastRemoteObject.unexportObject(callback, true);
+        }
+        server.shutdown();
+        registry.unbind(SERVICE_NAME);
+        UnicastRemoteObject.unexportObject(server, true);
+        UnicastRemoteObject.unexportObject(registry, true);
+    }
+
+    private void awaitDelivered(long target) {
+        // Yields rather than spins so the callback threads get a core on small machines.
+        while (delivered.get() < target) {
+            Thread.yield();
+        }
+    }
+}
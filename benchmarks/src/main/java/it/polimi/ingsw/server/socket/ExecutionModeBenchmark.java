@@ -0,0 +1,189 @@
+package it.polimi.ingsw.server.socket;
+
+import it.polimi.ingsw.server.admission.AdmissionControl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Thread-per-client server in both execution modes: four active clients (one sender, three receivers) and
+// optionally N idle connections opened after them. An operation is one line from the sender read in full by
+// every receiver.
+//
+// The modes are only compared without idle connections: the fixed pool refuses every connection past its
+// four clients, so with idle ones it would broadcast to 4 connections against thousands. What idle
+// connections cost the virtual-thread mode is measured on its own, with
+//   -p mode=VIRTUAL_THREADS -p idleConnections=0,1000,5000
+// and setup refuses a fixed pool with idle connections. With ROOM the active clients share a room and idle
+// connections get nothing, which measures holding them open; with BROADCAST every connection gets every
+// line, so the fan-out grows with them too. Idle connections use two file descriptors each in this JVM, so
+// raise ulimit -n to match.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutionModeBenchmark {
+
+    private static final int PORT = 12345;
+    private static final int RECEIVERS = 3;
+    private static final String ROOM = "bench";
+
+    public enum Target {
+        ROOM,
+        BROADCAST
+    }
+
+    @Param({"FIXED_POOL", "VIRTUAL_THREADS"})
+    public ExecutionMode mode;
+
+    @Param({"0"})
+    public int idleConnections;
+
+    @Param({"ROOM", "BROADCAST"})
+    public Target target;
+
+    @Param({"64"})
+    public int messageSize;
+
+    private ServerApplication server;
+    private SocketChannel sender;
+    private SocketChannel[] receivers;
+    private final List<SocketChannel> idle = new ArrayList<>();
+    private ByteBuffer message;
+    private ByteBuffer readBuffer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if (mode == ExecutionMode.FIXED_POOL && idleConnections > 0) {
+            throw new IllegalStateException("The fixed pool refuses idle connections; measure them with "
+                    + "-p mode=VIRTUAL_THREADS only");
+        }
+        AdmissionControl.global().setMessagesPerSecond(0);
+        server = new ServerApplication(mode);
+        server.startServer();
+        sender = connect();
+        receivers = new SocketChannel[RECEIVERS];
+        for (int i = 0; i < RECEIVERS; i++) {
+            receivers[i] = connect();
+        }
+        if (target == Target.ROOM) {
+            for (SocketChannel client : receivers) {
+                join(client);
+            }
+            join(sender);
+        }
+
+        for (int i = 0; i < idleConnections; i++) {
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", PORT));
+            idle.add(channel);
+            String welcome = readLine(channel);
+            if (welcome.startsWith(Frame.REJECTED)) {
+                throw new IllegalStateException("Idle connection " + i + " rejected: " + welcome);
+            }
+        }
+        System.out.println(mode + ": " + idleConnections + " idle connections, "
+                + Thread.activeCount() + " live platform threads");
+
+        String body = "x".repeat(messageSize);
+        String line = target == Target.ROOM ? "/msg " + ROOM + " " + body : body;
+        String received = (target == Target.ROOM ? "[" + ROOM + "] " : "") + "/127.0.0.1: " + body + "\n";
+        message = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+        readBuffer = ByteBuffer.allocateDirect(received.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Benchmark
+    public void deliver() throws IOException {
+        ByteBuffer out = message.duplicate();
+        while (out.hasRemaining()) {
+            sender.write(out);
+        }
+        for (SocketChannel receiver : receivers) {
+            readBuffer.clear();
+            while (readBuffer.hasRemaining()) {
+                if (receiver.read(readBuffer) < 0) {
+                    throw new IOException("Receiver closed by the server");
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (SocketChannel channel : idle) {
+            channel.close();
+        }
+        sender.close();
+        for (SocketChannel receiver : receivers) {
+            receiver.close();
+        }
+        server.stopServer();
+    }
+
+    private static void join(SocketChannel client) throws IOException {
+        ByteBuffer command = ByteBuffer.wrap(("/join " + ROOM + "\n").getBytes(StandardCharsets.UTF_8));
+        while (command.hasRemaining()) {
+            client.write(command);
+        }
+        String reply = readLine(client);
+        if (!reply.startsWith("Joined room")) {
+            throw new IllegalStateException("Could not join the benchmark room: " + reply);
+        }
+    }
+
+    // Retries until the server is listening, then consumes the welcome line so the next read is a broadcast.
+    private static SocketChannel connect() throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", PORT));
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                String welcome = readLine(channel);
+                if (welcome.startsWith(Frame.REJECTED)) {
+                    throw new IllegalStateException("Active client rejected: " + welcome);
+                }
+                return channel;
+            } catch (IOException e) {
+                if (attempt == 50) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private static String readLine(SocketChannel channel) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        ByteBuffer one = ByteBuffer.allocate(1);
+        while (true) {
+            one.clear();
+            if (channel.read(one) < 0) {
+                throw new IOException("Connection closed before a full line");
+            }
+            if (one.get(0) == '\n') {
+                return line.toString(StandardCharsets.UTF_8);
+            }
+            line.write(one.get(0));
+        }
+    }
+}
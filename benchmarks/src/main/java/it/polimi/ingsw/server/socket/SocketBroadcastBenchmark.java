@@ -0,0 +1,131 @@
+package it.polimi.ingsw.server.socket;
+
+import it.polimi.ingsw.server.admission.AdmissionControl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// One sender and N receivers on loopback; an operation is a single line sent by the sender and read in full
+// by every receiver, so sample time is the end-to-end broadcast latency to the last recipient.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SocketBroadcastBenchmark {
+
+    private static final int PORT = 12345;
+
+    public enum Engine {
+        NIO,
+        VIRTUAL_THREADS
+    }
+
+    @Param({"1", "4", "64", "1024"})
+    public int clients;
+
+    @Param({"NIO", "VIRTUAL_THREADS"})
+    public Engine engine;
+
+    @Param({"64"})
+    public int messageSize;
+
+    private NioServerApplication nioServer;
+    private ServerApplication blockingServer;
+    private SocketChannel sender;
+    private SocketChannel[] receivers;
+    private ByteBuffer message;
+    private ByteBuffer readBuffer;
+    private int expectedBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        // The default per-client rate limit would throttle the sender to a few messages per second.
+        AdmissionControl.global().setMessagesPerSecond(0);
+        if (engine == Engine.NIO) {
+            nioServer = new NioServerApplication();
+            nioServer.startServer();
+        } else {
+            blockingServer = new ServerApplication(ExecutionMode.VIRTUAL_THREADS);
+            blockingServer.startServer();
+        }
+        sender = connect();
+        receivers = new SocketChannel[clients];
+        for (int i = 0; i < clients; i++) {
+            receivers[i] = connect();
+        }
+
+        String body = "x".repeat(messageSize);
+        message = ByteBuffer.wrap((body + "\n").getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+        expectedBytes = ("/127.0.0.1: " + body + "\n").getBytes(StandardCharsets.UTF_8).length;
+        readBuffer = ByteBuffer.allocateDirect(expectedBytes);
+    }
+
+    @Benchmark
+    public void broadcast() throws IOException {
+        ByteBuffer out = message.duplicate();
+        while (out.hasRemaining()) {
+            sender.write(out);
+        }
+        for (SocketChannel receiver : receivers) {
+            readBuffer.clear();
+            while (readBuffer.hasRemaining()) {
+                if (receiver.read(readBuffer) < 0) {
+                    throw new IOException("Receiver closed by the server");
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        sender.close();
+        for (SocketChannel receiver : receivers) {
+            receiver.close();
+        }
+        if (nioServer != null) nioServer.stopServer();
+        if (blockingServer != null) blockingServer.stopServer();
+    }
+
+    // Retries until the server is listening, then consumes the welcome line so the next read is a broadcast.
+    private static SocketChannel connect() throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", PORT));
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                ByteBuffer one = ByteBuffer.allocate(1);
+                do {
+                    one.clear();
+                    if (channel.read(one) < 0) {
+                        throw new IOException("Connection closed before the welcome line");
+                    }
+                } while (one.get(0) != '\n');
+                return channel;
+            } catch (IOException e) {
+                if (attempt == 50) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package it.polimi.ingsw.server.socket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireEncodingBenchmark {
+
+    private static final int FAN_OUT = 64;
+
+    @Param({"16", "256", "4096"})
+    public int messageSize;
+
+    private String message;
+    private ByteArrayOutputStream sink;
+    private PrintWriter lineWriter;
+    private DataOutputStream frameWriter;
+    private byte[] lineBytes;
+    private byte[] frameBytes;
+    private final byte[] frameType = new byte[1];
+    private final ArrayDeque<ByteBuffer> segments = new ArrayDeque<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        message = "é".repeat(messageSize / 2);
+        sink = new ByteArrayOutputStream(messageSize * 2 + 16);
+        lineWriter = new PrintWriter(new OutputStreamWriter(sink, StandardCharsets.UTF_8), false);
+        frameWriter = new DataOutputStream(sink);
+
+        lineWriter.println(message);
+        lineWriter.flush();
+        lineBytes = sink.toByteArray();
+        sink.reset();
+        Frame.writeText(frameWriter, message);
+        frameWriter.flush();
+        frameBytes = sink.toByteArray();
+        sink.reset();
+    }
+
+    @Benchmark
+    public int lineEncode() {
+        lineWriter.println(message);
+        lineWriter.flush();
+        int size = sink.size();
+        sink.reset();
+        return size;
+    }
+
+    @Benchmark
+    public int frameEncode() throws IOException {
+        Frame.writeText(frameWriter, message);
+        frameWriter.flush();
+        int size = sink.size();
+        sink.reset();
+        return size;
+    }
+
+    @Benchmark
+    public String lineDecode() throws IOException {
+        return Frame.readLine(new ByteArrayInputStream(lineBytes));
+    }
+
+    @Benchmark
+    public byte[] frameDecode() throws IOException {
+        return Frame.read(new DataInputStream(new ByteArrayInputStream(frameBytes)), frameType);
+    }
+
+    // The legacy broadcast path: every recipient encodes the same String again.
+    @Benchmark
+    public int lineFanOutPerRecipient() {
+        int total = 0;
+        for (int i = 0; i < FAN_OUT; i++) {
+            total += lineEncode();
+        }
+        return total;
+    }
+
+    // The current broadcast path: one encoding, shared by every recipient's segments.
+    @Benchmark
+    public int sharedFanOut() {
+        OutboundMessage outbound = OutboundMessage.text(message);
+        for (int i = 0; i < FAN_OUT; i++) {
+            outbound.appendSegments(segments, i % 2 == 0, false);
+        }
+        int count = segments.size();
+        segments.clear();
+        return count;
+    }
+}
@@ -1,8 +1,16 @@
 package it.polimi.ingsw.server;
 
+import it.polimi.ingsw.server.bus.MessageBus;
+import it.polimi.ingsw.server.cluster.ClusterConfig;
+import it.polimi.ingsw.server.cluster.ClusterRelay;
+import it.polimi.ingsw.server.journal.Journal;
+import it.polimi.ingsw.server.metrics.MetricsHttpEndpoint;
+import it.polimi.ingsw.server.metrics.MetricsRegistry;
 import it.polimi.ingsw.server.rmi.RemoteService;
 import it.polimi.ingsw.server.rmi.RMIServer;
-import it.polimi.ingsw.server.socket.ServerApplication;
+import it.polimi.ingsw.server.room.RoomManager;
+import it.polimi.ingsw.server.socket.NioServerApplication;
+import it.polimi.ingsw.server.sync.GameStateSync;
 
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
@@ -12,13 +20,30 @@ import java.util.logging.Logger;
 public class CombinedServerExecutor {
 
     private static final Logger LOGGER = Logger.getLogger(CombinedServerExecutor.class.getName());
-    private static final int RMI_PORT = 1099;
+    private static final int RMI_PORT = Integer.getInteger("rmi.port", 1099);
     private static final String RMI_SERVICE_NAME = "GalaxyTruckerService";
+    private static final String METRICS_HTTP_PORT_PROPERTY = "metrics.http.port";
 
     public static void main(String[] args) {
         LOGGER.info("Starting both servers...");
+        RMIServer.applyResponseTimeout();
 
-        ServerApplication socketServer = new ServerApplication();
+        RoomManager rooms = new RoomManager();
+        MessageBus bus = new MessageBus();
+        // Games publish their snapshots here; clients of either transport follow them.
+        GameStateSync states = new GameStateSync();
+
+        // Registered before any client can connect, so the journal sees every broadcast.
+        try {
+            Journal journal = Journal.fromSystemProperties();
+            if (journal != null) {
+                bus.register(journal);
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Could not open the message journal", e);
+        }
+
+        NioServerApplication socketServer = new NioServerApplication(rooms, bus, states);
         LOGGER.info("Starting Socket Server...");
         socketServer.startServer();
         LOGGER.info("Socket Server start sequence initiated (runs in background).");
@@ -26,7 +51,7 @@ public class CombinedServerExecutor {
         LOGGER.info("Attempting to start RMI Server...");
         try {
 
-            RemoteService rmiService = new RMIServer();
+            RemoteService rmiService = new RMIServer(rooms, bus, states);
             LOGGER.info("Instance of RMI RemoteService created.");
 
             Registry registry = LocateRegistry.createRegistry(RMI_PORT);
@@ -44,6 +69,25 @@ public class CombinedServerExecutor {
             System.exit(1);
         }
 
+        // Static membership: -Dcluster.port=... -Dcluster.peers=host:port,... [-Dcluster.nodeId=...]
+        ClusterConfig cluster = ClusterConfig.fromSystemProperties();
+        if (cluster != null) {
+            try {
+                new ClusterRelay(cluster, bus, rooms).start();
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Could not start the cluster relay on port " + cluster.port(), e);
+            }
+        }
+
+        Integer metricsPort = Integer.getInteger(METRICS_HTTP_PORT_PROPERTY);
+        if (metricsPort != null) {
+            try {
+                new MetricsHttpEndpoint(MetricsRegistry.global(), metricsPort).start();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Could not start the metrics HTTP endpoint on port " + metricsPort, e);
+            }
+        }
+
         LOGGER.info("Both Socket and RMI servers are now running (or attempting to run).");
 
     }
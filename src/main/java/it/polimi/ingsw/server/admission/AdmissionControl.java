@@ -0,0 +1,213 @@
+package it.polimi.ingsw.server.admission;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.ObjectName;
+
+// Process-wide admission limits shared by every transport: a cap on connected clients, a per-client
+// message rate, and load shedding while too many messages are queued for delivery. Exported as a JMX MBean
+// under it.polimi.ingsw.server:type=Admission, so every limit can be changed on a running server.
+//
+// The queued total is sampled in the background from gauges the servers register, so the per-message
+// check is two volatile reads and a token bucket.
+public final class AdmissionControl implements AdmissionControlMBean {
+
+    public enum Verdict {
+        ACCEPTED(null),
+        RATE_LIMITED("Rate limit exceeded, message dropped."),
+        SHED("Server busy, message dropped.");
+
+        private final String message;
+
+        Verdict(String message) {
+            this.message = message;
+        }
+
+        // What to tell the client; null when the message was accepted.
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(AdmissionControl.class.getName());
+    private static final long SAMPLE_INTERVAL_MILLIS = 100;
+    private static final AdmissionControl GLOBAL = new AdmissionControl(
+            Double.parseDouble(System.getProperty("admission.messagesPerSecond", "20")),
+            Integer.getInteger("admission.burst", 40),
+            Integer.getInteger("admission.maxConnections", 10_000),
+            Long.getLong("admission.shedQueueDepth", 50_000));
+
+    private volatile double messagesPerSecond;
+    private volatile int burst;
+    private volatile int maxConnections;
+    private volatile long shedQueueDepth;
+    private volatile long queuedMessages;
+    private volatile boolean shedding;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final LongAdder rejectedConnections = new LongAdder();
+    private final LongAdder rateLimitedMessages = new LongAdder();
+    private final LongAdder shedMessages = new LongAdder();
+    private final Map<String, LongSupplier> loadGauges = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("admission-sampler").factory());
+
+    private AdmissionControl(double messagesPerSecond, int burst, int maxConnections, long shedQueueDepth) {
+        this.messagesPerSecond = messagesPerSecond;
+        this.burst = burst;
+        this.maxConnections = maxConnections;
+        this.shedQueueDepth = shedQueueDepth;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("it.polimi.ingsw.server:type=Admission"));
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Could not register JMX admission control", e);
+        }
+        sampler.scheduleAtFixedRate(this::sampleLoad, SAMPLE_INTERVAL_MILLIS, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public static AdmissionControl global() {
+        return GLOBAL;
+    }
+
+    // Returns false when the server is full; every true must be paired with one releaseConnection().
+    public boolean tryAcquireConnection() {
+        while (true) {
+            int current = connections.get();
+            if (current >= maxConnections) {
+                rejectedConnections.increment();
+                return false;
+            }
+            if (connections.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void releaseConnection() {
+        connections.decrementAndGet();
+    }
+
+    public String getRejectionMessage() {
+        return "Server is full (" + maxConnections + " clients), please try again later.";
+    }
+
+    // Shedding is checked first, so messages dropped for load do not use up the client's rate.
+    public Verdict admit(TokenBucket bucket, int messages) {
+        if (shedding) {
+            shedMessages.add(messages);
+            return Verdict.SHED;
+        }
+        double rate = messagesPerSecond;
+        if (rate > 0 && !bucket.tryAcquire(messages, rate, Math.max(1, burst))) {
+            rateLimitedMessages.add(messages);
+            return Verdict.RATE_LIMITED;
+        }
+        return Verdict.ACCEPTED;
+    }
+
+    // A gauge of messages waiting for delivery; registering under an existing name replaces it.
+    public void registerLoadGauge(String name, LongSupplier queuedMessages) {
+        loadGauges.put(name, queuedMessages);
+    }
+
+    public void unregisterLoadGauge(String name) {
+        loadGauges.remove(name);
+    }
+
+    private void sampleLoad() {
+        long total = 0;
+        for (LongSupplier gauge : loadGauges.values()) {
+            total += gauge.getAsLong();
+        }
+        queuedMessages = total;
+        long limit = shedQueueDepth;
+        boolean overloaded = limit > 0 && total > limit;
+        if (overloaded != shedding) {
+            shedding = overloaded;
+            LOGGER.log(overloaded ? Level.WARNING : Level.INFO, overloaded
+                    ? "Shedding load: " + total + " messages queued, limit " + limit
+                    : "Load back to normal: " + total + " messages queued");
+        }
+    }
+
+    @Override
+    public double getMessagesPerSecond() {
+        return messagesPerSecond;
+    }
+
+    // Zero or less disables rate limiting.
+    @Override
+    public void setMessagesPerSecond(double messagesPerSecond) {
+        this.messagesPerSecond = messagesPerSecond;
+    }
+
+    @Override
+    public int getBurst() {
+        return burst;
+    }
+
+    @Override
+    public void setBurst(int burst) {
+        this.burst = burst;
+    }
+
+    @Override
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    // Clients already connected above a lowered cap stay connected.
+    @Override
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    @Override
+    public long getShedQueueDepth() {
+        return shedQueueDepth;
+    }
+
+    // Zero or less disables load shedding.
+    @Override
+    public void setShedQueueDepth(long shedQueueDepth) {
+        this.shedQueueDepth = shedQueueDepth;
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return connections.get();
+    }
+
+    @Override
+    public long getRejectedConnections() {
+        return rejectedConnections.sum();
+    }
+
+    @Override
+    public long getRateLimitedMessages() {
+        return rateLimitedMessages.sum();
+    }
+
+    @Override
+    public long getShedMessages() {
+        return shedMessages.sum();
+    }
+
+    @Override
+    public long getQueuedMessages() {
+        return queuedMessages;
+    }
+
+    @Override
+    public boolean isShedding() {
+        return shedding;
+    }
+}
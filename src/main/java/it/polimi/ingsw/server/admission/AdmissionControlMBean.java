@@ -0,0 +1,31 @@
+package it.polimi.ingsw.server.admission;
+
+public interface AdmissionControlMBean {
+    double getMessagesPerSecond();
+
+    void setMessagesPerSecond(double messagesPerSecond);
+
+    int getBurst();
+
+    void setBurst(int burst);
+
+    int getMaxConnections();
+
+    void setMaxConnections(int maxConnections);
+
+    long getShedQueueDepth();
+
+    void setShedQueueDepth(long shedQueueDepth);
+
+    int getActiveConnections();
+
+    long getRejectedConnections();
+
+    long getRateLimitedMessages();
+
+    long getShedMessages();
+
+    long getQueuedMessages();
+
+    boolean isShedding();
+}
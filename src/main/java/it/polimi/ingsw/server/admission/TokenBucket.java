@@ -0,0 +1,25 @@
+package it.polimi.ingsw.server.admission;
+
+// Refilled lazily on acquire. The rate and capacity are passed in on every call, so a change to the limits
+// applies to existing buckets straight away. Synchronized because RMI calls for one stub can arrive on
+// several threads; socket buckets are only ever touched by their reader.
+public final class TokenBucket {
+
+    private double tokens = Double.NaN;
+    private long lastRefillNanos;
+
+    // A batch needs a token per message, except that one larger than the capacity only needs a full
+    // bucket. It then leaves the bucket in debt, so such batches still pass at the configured average rate.
+    public synchronized boolean tryAcquire(int permits, double ratePerSecond, int capacity) {
+        long now = System.nanoTime();
+        tokens = Double.isNaN(tokens)
+                ? capacity
+                : Math.min(capacity, tokens + (now - lastRefillNanos) * ratePerSecond / 1e9);
+        lastRefillNanos = now;
+        if (tokens < Math.min(permits, capacity)) {
+            return false;
+        }
+        tokens -= permits;
+        return true;
+    }
+}
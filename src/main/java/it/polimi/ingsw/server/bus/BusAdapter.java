@@ -0,0 +1,11 @@
+package it.polimi.ingsw.server.bus;
+
+import java.util.List;
+
+// A transport plugged into the MessageBus.
+public interface BusAdapter {
+
+    // Called on the bus thread with messages in publish order. Implementations hand the batch to their own
+    // queues and return; blocking here delays every other transport.
+    void deliver(List<BusMessage> batch);
+}
@@ -0,0 +1,92 @@
+package it.polimi.ingsw.server.bus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+// A message on the bus. It records which transport it came from and, optionally, the client that sent it,
+// so adapters can skip echoing it back. The text is kept as a String or as UTF-8 bytes, whichever the
+// publisher had, and converted at most once.
+public final class BusMessage {
+
+    private record Encoded(Function<BusMessage, ?> encoder, Object value) {
+    }
+
+    private final String origin;
+    private final Object sender;
+    private final long publishedNanos = System.nanoTime();
+    private final long publishedMillis = System.currentTimeMillis();
+    private volatile String text;
+    private volatile byte[] utf8;
+    private volatile Encoded encoded;
+    private volatile long sequence;
+
+    private BusMessage(String origin, Object sender, String text, byte[] utf8) {
+        this.origin = origin;
+        this.sender = sender;
+        this.text = text;
+        this.utf8 = utf8;
+    }
+
+    public static BusMessage text(String origin, Object sender, String text) {
+        return new BusMessage(origin, sender, text, null);
+    }
+
+    // The bytes are not copied and must not be modified afterwards.
+    public static BusMessage utf8(String origin, Object sender, byte[] utf8) {
+        return new BusMessage(origin, sender, null, utf8);
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public Object getSender() {
+        return sender;
+    }
+
+    public long getPublishedNanos() {
+        return publishedNanos;
+    }
+
+    // Wall-clock publish time, for records that outlive the process.
+    public long getPublishedMillis() {
+        return publishedMillis;
+    }
+
+    // The message's position in the bus history, or zero before the bus has dispatched it.
+    public long getSequence() {
+        return sequence;
+    }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public String getText() {
+        String current = text;
+        if (current == null) {
+            text = current = new String(utf8, StandardCharsets.UTF_8);
+        }
+        return current;
+    }
+
+    public byte[] getUtf8() {
+        byte[] current = utf8;
+        if (current == null) {
+            utf8 = current = text.getBytes(StandardCharsets.UTF_8);
+        }
+        return current;
+    }
+
+    // The encoder must be a constant: its identity is the cache key.
+    @SuppressWarnings("unchecked")
+    public <T> T encoded(Function<BusMessage, T> encoder) {
+        Encoded current = encoded;
+        if (current != null && current.encoder() == encoder) {
+            return (T) current.value();
+        }
+        T value = encoder.apply(this);
+        encoded = new Encoded(encoder, value);
+        return value;
+    }
+}
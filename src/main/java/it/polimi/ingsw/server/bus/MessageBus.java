@@ -0,0 +1,160 @@
+package it.polimi.ingsw.server.bus;
+
+import it.polimi.ingsw.server.history.MessageHistory;
+import it.polimi.ingsw.server.metrics.MetricsRegistry;
+import it.polimi.ingsw.server.metrics.TransportMetrics;
+import it.polimi.ingsw.server.util.MpscRing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Single dispatch path for every transport. Publishers from any thread append to a lock-free ring; one bus
+// thread drains it in batches and hands each batch, in publish order, to every registered adapter.
+//
+// Batching and backpressure are tuned here: a batch window makes the bus wait briefly after the first
+// message so more can join the batch, and a publisher that finds the ring full waits up to the publish
+// timeout before the message is dropped. Event loops must not wait at all and use tryPublish instead.
+public final class MessageBus {
+
+    private static final Logger LOGGER = Logger.getLogger(MessageBus.class.getName());
+    private static final int DEFAULT_CAPACITY = 64 * 1024;
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final long DEFAULT_PUBLISH_TIMEOUT_MILLIS = 100;
+    private static final long FULL_RETRY_NANOS = 50_000;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+    private static final int HISTORY_MESSAGES = Integer.getInteger("history.maxMessages", 1024);
+    private static final int HISTORY_BYTES = Integer.getInteger("history.bytes", 4 * 1024 * 1024);
+
+    private final MpscRing<BusMessage> ring;
+    private final List<BusAdapter> adapters = new CopyOnWriteArrayList<>();
+    private final MessageHistory history = new MessageHistory(HISTORY_MESSAGES, HISTORY_BYTES);
+    private final long batchWindowNanos;
+    private final long publishTimeoutNanos;
+    private final LongAdder dropped = new LongAdder();
+    private final TransportMetrics metrics = MetricsRegistry.global().transport("bus");
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+    private volatile boolean dispatcherIdle;
+
+    public MessageBus() {
+        this(0);
+    }
+
+    // A batch window of zero or less dispatches whatever is queued as soon as the bus thread gets to it.
+    public MessageBus(long batchWindowMicros) {
+        this(DEFAULT_CAPACITY, batchWindowMicros, DEFAULT_PUBLISH_TIMEOUT_MILLIS);
+    }
+
+    public MessageBus(int capacity, long batchWindowMicros, long publishTimeoutMillis) {
+        this.ring = new MpscRing<>(capacity);
+        this.batchWindowNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, batchWindowMicros));
+        this.publishTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(publishTimeoutMillis);
+        metrics.setOutboundQueueDepthGauge(ring::size);
+        this.dispatcher = Thread.ofPlatform().daemon().name("message-bus").start(this::dispatchLoop);
+    }
+
+    public void register(BusAdapter adapter) {
+        adapters.add(adapter);
+    }
+
+    public void unregister(BusAdapter adapter) {
+        adapters.remove(adapter);
+    }
+
+    // Returns false if the message was dropped because the ring stayed full for the whole publish timeout.
+    public boolean publish(BusMessage message) {
+        metrics.messageIn();
+        if (!ring.offer(message)) {
+            long deadline = System.nanoTime() + publishTimeoutNanos;
+            do {
+                if (System.nanoTime() - deadline >= 0 || !running) {
+                    dropped.increment();
+                    return false;
+                }
+                LockSupport.parkNanos(this, FULL_RETRY_NANOS);
+            } while (!ring.offer(message));
+        }
+        wakeDispatcher();
+        return true;
+    }
+
+    // Never waits: returns false, dropping the message, if the ring is full.
+    public boolean tryPublish(BusMessage message) {
+        metrics.messageIn();
+        if (!running || !ring.offer(message)) {
+            dropped.increment();
+            return false;
+        }
+        wakeDispatcher();
+        return true;
+    }
+
+    private void wakeDispatcher() {
+        if (dispatcherIdle) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    // Every message the bus dispatched, recorded before any adapter sees it; the history's sequence number
+    // is stored on the message.
+    public MessageHistory getHistory() {
+        return history;
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public int getQueuedCount() {
+        return ring.size();
+    }
+
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(dispatcher);
+    }
+
+    private void dispatchLoop() {
+        List<BusMessage> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (running) {
+            if (ring.drain(batch::add, MAX_BATCH_SIZE) == 0) {
+                dispatcherIdle = true;
+                if (ring.isEmpty() && running) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                dispatcherIdle = false;
+                continue;
+            }
+            if (batchWindowNanos > 0 && batch.size() < MAX_BATCH_SIZE) {
+                LockSupport.parkNanos(this, batchWindowNanos);
+                ring.drain(batch::add, MAX_BATCH_SIZE - batch.size());
+            }
+            dispatch(List.copyOf(batch));
+            batch.clear();
+        }
+    }
+
+    private void dispatch(List<BusMessage> batch) {
+        for (BusMessage message : batch) {
+            message.setSequence(history.append(message.getUtf8()));
+        }
+        for (BusAdapter adapter : adapters) {
+            try {
+                adapter.deliver(batch);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Bus adapter failed to deliver a batch", e);
+            }
+        }
+        metrics.messagesOut(batch.size());
+        long now = System.nanoTime();
+        for (BusMessage message : batch) {
+            metrics.fanOutLatency().record(now - message.getPublishedNanos());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package it.polimi.ingsw.server.cluster;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+// Static cluster membership: this node's id, the port it accepts peer links on and the peers it sends to.
+// Every node lists every other node, so a message needs exactly one hop to reach the whole cluster.
+public record ClusterConfig(String nodeId, int port, List<InetSocketAddress> peers) {
+
+    public static final String NODE_ID_PROPERTY = "cluster.nodeId";
+    public static final String PORT_PROPERTY = "cluster.port";
+    public static final String PEERS_PROPERTY = "cluster.peers";
+
+    public ClusterConfig {
+        peers = List.copyOf(peers);
+    }
+
+    // Returns null when no cluster port is configured, i.e. the node runs on its own.
+    public static ClusterConfig fromSystemProperties() {
+        Integer port = Integer.getInteger(PORT_PROPERTY);
+        if (port == null) {
+            return null;
+        }
+        String nodeId = System.getProperty(NODE_ID_PROPERTY, "node-" + port);
+        return new ClusterConfig(nodeId, port, parsePeers(System.getProperty(PEERS_PROPERTY, "")));
+    }
+
+    // Parses "host:port,host:port"; hosts are resolved on every connection attempt.
+    public static List<InetSocketAddress> parsePeers(String value) {
+        List<InetSocketAddress> peers = new ArrayList<>();
+        for (String entry : value.split(",")) {
+            String peer = entry.strip();
+            if (peer.isEmpty()) {
+                continue;
+            }
+            int colon = peer.lastIndexOf(':');
+            if (colon <= 0 || colon == peer.length() - 1) {
+                throw new IllegalArgumentException("Peer must be host:port: " + peer);
+            }
+            try {
+                peers.add(InetSocketAddress.createUnresolved(peer.substring(0, colon), Integer.parseInt(peer.substring(colon + 1))));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid port in peer " + peer, e);
+            }
+        }
+        return peers;
+    }
+}
@@ -0,0 +1,273 @@
+package it.polimi.ingsw.server.cluster;
+
+import it.polimi.ingsw.server.bus.BusAdapter;
+import it.polimi.ingsw.server.bus.BusMessage;
+import it.polimi.ingsw.server.bus.MessageBus;
+import it.polimi.ingsw.server.metrics.MetricsRegistry;
+import it.polimi.ingsw.server.metrics.TransportMetrics;
+import it.polimi.ingsw.server.room.RoomManager;
+import it.polimi.ingsw.server.room.RoomMessage;
+import it.polimi.ingsw.server.socket.Frame;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+// Relays broadcasts and room messages between the nodes of a statically configured cluster.
+//
+// Locally published messages are collected from the bus and from the RoomManager, encoded once per batch
+// and queued on a link to every peer. Messages arriving from a peer are published locally with the
+// "cluster" origin, which this relay never forwards, so with a full mesh nothing is relayed twice. The
+// hello frame carries the sender's node id; this node is skipped in the peer list, and a link from a node
+// with the same id is refused.
+//
+// Link protocol: socket Frames, a TYPE_HELLO frame with the UTF-8 node id, then TYPE_BATCH frames holding
+// entries of [boolean hasRoom][room, if any, as writeUTF][int length][UTF-8 text].
+public class ClusterRelay implements BusAdapter {
+
+    static final byte TYPE_HELLO = 16;
+    static final byte TYPE_BATCH = 17;
+
+    private static final Logger LOGGER = Logger.getLogger(ClusterRelay.class.getName());
+    private static final String ORIGIN = "cluster";
+    private static final int OUTBOUND_CAPACITY = 64 * 1024;
+    private static final int MAX_BATCH_MESSAGES = 256;
+    private static final int MAX_BATCH_BYTES = 256 * 1024;
+
+    private record Relayed(String room, byte[] utf8) {
+    }
+
+    private final ClusterConfig config;
+    private final MessageBus bus;
+    private final RoomManager rooms;
+    private final List<PeerLink> links = new ArrayList<>();
+    private final BlockingQueue<Relayed> outbound = new ArrayBlockingQueue<>(OUTBOUND_CAPACITY);
+    private final LongAdder dropped = new LongAdder();
+    private final TransportMetrics metrics = MetricsRegistry.global().transport("cluster");
+    private volatile boolean running;
+    private ServerSocket serverSocket;
+    private Thread encoder;
+
+    public ClusterRelay(ClusterConfig config, MessageBus bus, RoomManager rooms) {
+        this.config = config;
+        this.bus = bus;
+        this.rooms = rooms;
+        for (InetSocketAddress peer : config.peers()) {
+            if (!isSelf(peer)) {
+                links.add(new PeerLink(peer, config.nodeId(), metrics));
+            }
+        }
+        metrics.setActiveConnectionsGauge(() -> links.stream().filter(PeerLink::isConnected).count());
+        metrics.setOutboundQueueDepthGauge(() -> outbound.size() + links.stream().mapToLong(PeerLink::getQueuedCount).sum());
+    }
+
+    // Lets every node share one peer list that includes itself.
+    private boolean isSelf(InetSocketAddress peer) {
+        if (peer.getPort() != config.port()) {
+            return false;
+        }
+        try {
+            InetAddress address = InetAddress.getByName(peer.getHostString());
+            return address.isLoopbackAddress() || address.isAnyLocalAddress() || NetworkInterface.getByInetAddress(address) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(config.port());
+        running = true;
+        Thread.ofPlatform().daemon().name("cluster-acceptor").start(this::acceptPeers);
+        encoder = Thread.ofPlatform().daemon().name("cluster-encoder").start(this::encodeBatches);
+        for (PeerLink link : links) {
+            link.start();
+        }
+        bus.register(this);
+        rooms.setForwarder(this::forwardRoomMessage);
+        LOGGER.info("Cluster node " + config.nodeId() + " listening on port " + config.port() + " with " + links.size() + " peers.");
+    }
+
+    public void stop() {
+        running = false;
+        bus.unregister(this);
+        rooms.setForwarder(null);
+        for (PeerLink link : links) {
+            link.stop();
+        }
+        if (encoder != null) {
+            encoder.interrupt();
+        }
+        try {
+            if (serverSocket != null) serverSocket.close();
+        } catch (IOException e) {
+            LOGGER.warning("Error closing cluster socket: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void deliver(List<BusMessage> batch) {
+        for (BusMessage message : batch) {
+            if (!ORIGIN.equals(message.getOrigin())) {
+                enqueue(new Relayed(null, message.getUtf8()));
+            }
+        }
+    }
+
+    // Only messages published on this node reach the forwarder: publishLocal does not forward.
+    private void forwardRoomMessage(RoomMessage message) {
+        enqueue(new Relayed(message.getRoom(), message.getText().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void enqueue(Relayed message) {
+        if (!outbound.offer(message)) {
+            dropped.increment();
+        }
+    }
+
+    public long getDroppedCount() {
+        long total = dropped.sum();
+        for (PeerLink link : links) {
+            total += link.getDroppedCount();
+        }
+        return total;
+    }
+
+    // One batch is encoded once and shared by every peer link.
+    private void encodeBatches() {
+        List<Relayed> pending = new ArrayList<>(MAX_BATCH_MESSAGES);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            while (running) {
+                pending.add(outbound.take());
+                outbound.drainTo(pending, MAX_BATCH_MESSAGES - 1);
+                int messages = 0;
+                for (Relayed message : pending) {
+                    int size = encodedSize(message);
+                    if (size > Frame.MAX_PAYLOAD_LENGTH) {
+                        // No peer would accept the frame, so it would only ever fail to send.
+                        LOGGER.warning("Message of " + message.utf8().length + " bytes is too large to relay; dropped.");
+                        dropped.increment();
+                        continue;
+                    }
+                    // Checked before appending, so a batch never outgrows a frame; a large message goes alone.
+                    if (messages > 0 && bytes.size() + size > MAX_BATCH_BYTES) {
+                        sendBatch(bytes, messages);
+                        messages = 0;
+                    }
+                    out.writeBoolean(message.room() != null);
+                    if (message.room() != null) {
+                        out.writeUTF(message.room());
+                    }
+                    out.writeInt(message.utf8().length);
+                    out.write(message.utf8());
+                    messages++;
+                }
+                if (messages > 0) {
+                    sendBatch(bytes, messages);
+                }
+                pending.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // Writing to a ByteArrayOutputStream does not fail.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Bytes the entry takes in a batch; writeUTF uses modified UTF-8, with a 2-byte length.
+    private static int encodedSize(Relayed message) {
+        int size = 1 + 4 + message.utf8().length;
+        String room = message.room();
+        if (room != null) {
+            size += 2;
+            for (int i = 0; i < room.length(); i++) {
+                char c = room.charAt(i);
+                size += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+            }
+        }
+        return size;
+    }
+
+    private void sendBatch(ByteArrayOutputStream bytes, int messages) {
+        PeerLink.Batch batch = new PeerLink.Batch(bytes.toByteArray(), messages);
+        bytes.reset();
+        for (PeerLink link : links) {
+            link.offer(batch);
+        }
+    }
+
+    private void acceptPeers() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread.ofVirtual().name("cluster-in-" + socket.getRemoteSocketAddress()).start(() -> readPeer(socket));
+            } catch (IOException e) {
+                if (running) {
+                    LOGGER.warning("Error accepting cluster peer: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void readPeer(Socket socket) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            byte[] type = new byte[1];
+            byte[] payload = Frame.read(in, type);
+            String peerId = new String(payload, StandardCharsets.UTF_8);
+            if (type[0] != TYPE_HELLO || peerId.equals(config.nodeId())) {
+                LOGGER.warning("Refusing cluster link from " + socket.getRemoteSocketAddress() + " (" + peerId + ")");
+                return;
+            }
+            LOGGER.info("Cluster peer " + peerId + " connected.");
+            while (running) {
+                payload = Frame.read(in, type);
+                if (type[0] == TYPE_BATCH) {
+                    publishBatch(payload);
+                }
+            }
+        } catch (EOFException e) {
+            LOGGER.info("Cluster peer at " + socket.getRemoteSocketAddress() + " closed its link.");
+        } catch (IOException e) {
+            if (running) {
+                LOGGER.warning("Error reading from cluster peer " + socket.getRemoteSocketAddress() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void publishBatch(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int messages = 0;
+        while (in.available() > 0) {
+            String room = in.readBoolean() ? in.readUTF() : null;
+            byte[] text = new byte[in.readInt()];
+            in.readFully(text);
+            if (room == null) {
+                bus.publish(BusMessage.utf8(ORIGIN, null, text));
+            } else {
+                rooms.publishLocal(room, new String(text, StandardCharsets.UTF_8));
+            }
+            messages++;
+        }
+        metrics.messagesIn(messages);
+    }
+}
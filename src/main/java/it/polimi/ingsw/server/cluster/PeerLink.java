@@ -0,0 +1,128 @@
+package it.polimi.ingsw.server.cluster;
+
+import it.polimi.ingsw.server.metrics.TransportMetrics;
+import it.polimi.ingsw.server.socket.Frame;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+// Outgoing link to one peer. Batches are queued here and written by the link's own thread, which keeps
+// reconnecting while the peer is down; when the queue is full the oldest batch is dropped. Delivery is at
+// most once: a batch that was being written when the connection broke is lost.
+class PeerLink {
+
+    private static final Logger LOGGER = Logger.getLogger(PeerLink.class.getName());
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+    record Batch(byte[] payload, int messages) {
+    }
+
+    private final InetSocketAddress peer;
+    private final String name;
+    private final byte[] hello;
+    private final TransportMetrics metrics;
+    private final BlockingQueue<Batch> batches = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean running = true;
+    private volatile boolean connected;
+    private volatile Socket socket;
+    private Thread thread;
+
+    PeerLink(InetSocketAddress peer, String nodeId, TransportMetrics metrics) {
+        this.peer = peer;
+        this.name = peer.getHostString() + ":" + peer.getPort();
+        this.hello = nodeId.getBytes(StandardCharsets.UTF_8);
+        this.metrics = metrics;
+    }
+
+    void start() {
+        thread = Thread.ofVirtual().name("cluster-link-" + name).start(this::run);
+    }
+
+    void offer(Batch batch) {
+        while (!batches.offer(batch)) {
+            if (batches.poll() != null) {
+                dropped.increment();
+            }
+        }
+    }
+
+    boolean isConnected() {
+        return connected;
+    }
+
+    int getQueuedCount() {
+        return batches.size();
+    }
+
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private void run() {
+        while (running) {
+            try (Socket current = new Socket()) {
+                socket = current;
+                current.setTcpNoDelay(true);
+                current.connect(new InetSocketAddress(peer.getHostString(), peer.getPort()), CONNECT_TIMEOUT_MILLIS);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(current.getOutputStream()));
+                Frame.write(out, ClusterRelay.TYPE_HELLO, hello);
+                out.flush();
+                connected = true;
+                LOGGER.info("Connected to cluster peer " + name);
+                while (running) {
+                    Batch batch = batches.take();
+                    do {
+                        Frame.write(out, ClusterRelay.TYPE_BATCH, batch.payload());
+                        metrics.messagesOut(batch.messages());
+                    } while ((batch = batches.poll()) != null);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                if (running && connected) {
+                    LOGGER.warning("Lost link to cluster peer " + name + ": " + e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                connected = false;
+            }
+            sleepBeforeReconnect();
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    void stop() {
+        running = false;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                LOGGER.fine("Error closing link to " + name + ": " + e.getMessage());
+            }
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package it.polimi.ingsw.server.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+// Compact schema-driven encoding: the schema id as a varint, then each field in schema order with no names.
+// Longs are zigzag varints, strings a varint UTF-8 length followed by the bytes, and byte arrays the same.
+// Encoding goes through pooled scratch buffers, so the only allocation per message is the exact-size result.
+final class BinaryCodec implements MessageCodec {
+
+    private static final int POOL_SIZE = Integer.getInteger("codec.bufferPoolSize", 64);
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    // Buffers grown past this by an unusually large message are dropped rather than pooled.
+    private static final int MAX_POOLED_BUFFER_SIZE = 64 * 1024;
+
+    private final ArrayBlockingQueue<Writer> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    @Override
+    public String name() {
+        return "binary";
+    }
+
+    @Override
+    public byte[] encode(Message message) {
+        Writer writer = pool.poll();
+        if (writer == null) {
+            writer = new Writer();
+        }
+        try {
+            writer.writeVarint(Schemas.of(message).id());
+            Schemas.write(message, writer);
+            return Arrays.copyOf(writer.buffer, writer.length);
+        } finally {
+            writer.length = 0;
+            if (writer.buffer.length <= MAX_POOLED_BUFFER_SIZE) {
+                pool.offer(writer);
+            }
+        }
+    }
+
+    @Override
+    public Message decode(byte[] bytes, int offset, int length) {
+        Reader reader = new Reader(bytes, offset, offset + length);
+        long id = reader.readVarint();
+        // Checked before narrowing, so an id past the int range cannot wrap around to a valid one.
+        if (id < 0 || id > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Unknown message type: " + Long.toUnsignedString(id));
+        }
+        Message message = Schemas.byId((int) id).reader().apply(reader);
+        if (reader.position != reader.end) {
+            throw new IllegalArgumentException("Trailing bytes after message");
+        }
+        return message;
+    }
+
+    private static final class Writer implements FieldWriter {
+
+        private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+        private int length;
+
+        @Override
+        public void writeString(String name, String value) {
+            int utf8Length = utf8Length(value);
+            writeVarint(utf8Length);
+            ensureCapacity(length + utf8Length);
+            if (utf8Length == value.length()) {
+                // ASCII, the common case, needs no encoder.
+                for (int i = 0; i < utf8Length; i++) {
+                    buffer[length++] = (byte) value.charAt(i);
+                }
+            } else {
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                System.arraycopy(utf8, 0, buffer, length, utf8.length);
+                length += utf8.length;
+            }
+        }
+
+        @Override
+        public void writeLong(String name, long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        @Override
+        public void writeBytes(String name, byte[] value) {
+            writeVarint(value.length);
+            ensureCapacity(length + value.length);
+            System.arraycopy(value, 0, buffer, length, value.length);
+            length += value.length;
+        }
+
+        void writeVarint(long value) {
+            ensureCapacity(length + 10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+            }
+        }
+
+        // Unpaired surrogates are counted as the one '?' byte the encoder replaces them with.
+        private static int utf8Length(String value) {
+            int utf8Length = value.length();
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    if (c < 0x800) {
+                        utf8Length += 1;
+                    } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                            && Character.isLowSurrogate(value.charAt(i + 1))) {
+                        utf8Length += 2;
+                        i++;
+                    } else if (!Character.isSurrogate(c)) {
+                        utf8Length += 2;
+                    }
+                }
+            }
+            return utf8Length;
+        }
+    }
+
+    private static final class Reader implements FieldReader {
+
+        private final byte[] bytes;
+        private final int end;
+        private int position;
+
+        Reader(byte[] bytes, int position, int end) {
+            this.bytes = bytes;
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public String readString(String name) {
+            int length = readLength(name);
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        @Override
+        public byte[] readBytes(String name) {
+            int length = readLength(name);
+            byte[] value = Arrays.copyOfRange(bytes, position, position + length);
+            position += length;
+            return value;
+        }
+
+        private int readLength(String name) {
+            long length = readVarint();
+            // A varint can decode to a negative length, which must not be used as one.
+            if (length < 0 || length > end - position) {
+                throw new IllegalArgumentException("Invalid length for field " + name);
+            }
+            return (int) length;
+        }
+
+        @Override
+        public long readLong(String name) {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position == end) {
+                    throw new IllegalArgumentException("Truncated message");
+                }
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+    }
+}
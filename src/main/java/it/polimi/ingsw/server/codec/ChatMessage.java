@@ -0,0 +1,5 @@
+package it.polimi.ingsw.server.codec;
+
+// Broadcast to everyone, like a line of text.
+public record ChatMessage(String text) implements Message {
+}
@@ -0,0 +1,10 @@
+package it.polimi.ingsw.server.codec;
+
+// Read from by a Schema in the same order it writes. Throws IllegalArgumentException on malformed input.
+public interface FieldReader {
+    String readString(String name);
+
+    long readLong(String name);
+
+    byte[] readBytes(String name);
+}
@@ -0,0 +1,10 @@
+package it.polimi.ingsw.server.codec;
+
+// Written to by a Schema, field by field in a fixed order. The binary codec ignores the names.
+public interface FieldWriter {
+    void writeString(String name, String value);
+
+    void writeLong(String name, long value);
+
+    void writeBytes(String name, byte[] value);
+}
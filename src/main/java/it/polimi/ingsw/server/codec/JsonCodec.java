@@ -0,0 +1,193 @@
+package it.polimi.ingsw.server.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// A flat JSON object per message, {"type":"<schema name>", then each field in schema order}, for clients that
+// would rather not speak the binary codec and for reading traffic while debugging. Only what the schemas
+// write is accepted back: string and integer values, byte arrays as Base64 strings, no nesting, fields in
+// schema order.
+final class JsonCodec implements MessageCodec {
+
+    @Override
+    public String name() {
+        return "json";
+    }
+
+    @Override
+    public byte[] encode(Message message) {
+        Writer writer = new Writer();
+        writer.out.append("{\"type\":");
+        writer.quote(Schemas.of(message).name());
+        Schemas.write(message, writer);
+        writer.out.append('}');
+        return writer.out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Message decode(byte[] bytes, int offset, int length) {
+        Reader reader = new Reader(new String(bytes, offset, length, StandardCharsets.UTF_8));
+        reader.expect('{');
+        Message message = Schemas.byName(reader.readString("type")).reader().apply(reader);
+        reader.expect('}');
+        reader.skipWhitespace();
+        if (reader.position != reader.json.length()) {
+            throw new IllegalArgumentException("Trailing characters after message");
+        }
+        return message;
+    }
+
+    private static final class Writer implements FieldWriter {
+
+        private final StringBuilder out = new StringBuilder(64);
+
+        @Override
+        public void writeString(String name, String value) {
+            out.append(",\"").append(name).append("\":");
+            quote(value);
+        }
+
+        @Override
+        public void writeLong(String name, long value) {
+            out.append(",\"").append(name).append("\":").append(value);
+        }
+
+        @Override
+        public void writeBytes(String name, byte[] value) {
+            writeString(name, Base64.getEncoder().encodeToString(value));
+        }
+
+        void quote(String value) {
+            out.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> out.append("\\\"");
+                    case '\\' -> out.append("\\\\");
+                    case '\n' -> out.append("\\n");
+                    case '\r' -> out.append("\\r");
+                    case '\t' -> out.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            out.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            out.append(c);
+                        }
+                    }
+                }
+            }
+            out.append('"');
+        }
+    }
+
+    private static final class Reader implements FieldReader {
+
+        private final String json;
+        private int position;
+        private boolean first = true;
+
+        Reader(String json) {
+            this.json = json;
+        }
+
+        @Override
+        public String readString(String name) {
+            key(name);
+            return string();
+        }
+
+        @Override
+        public long readLong(String name) {
+            key(name);
+            int start = position;
+            if (position < json.length() && json.charAt(position) == '-') {
+                position++;
+            }
+            while (position < json.length() && Character.isDigit(json.charAt(position))) {
+                position++;
+            }
+            try {
+                return Long.parseLong(json, start, position, 10);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number for field " + name);
+            }
+        }
+
+        @Override
+        public byte[] readBytes(String name) {
+            try {
+                return Base64.getDecoder().decode(readString(name));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid Base64 for field " + name);
+            }
+        }
+
+        private void key(String name) {
+            if (!first) {
+                expect(',');
+            }
+            first = false;
+            if (!name.equals(string())) {
+                throw new IllegalArgumentException("Expected field " + name);
+            }
+            expect(':');
+            skipWhitespace();
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                if (position >= json.length()) {
+                    throw new IllegalArgumentException("Unterminated string");
+                }
+                char c = json.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position >= json.length()) {
+                    throw new IllegalArgumentException("Unterminated string");
+                }
+                char escaped = json.charAt(position++);
+                switch (escaped) {
+                    case '"', '\\', '/' -> value.append(escaped);
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'u' -> {
+                        if (position + 4 > json.length()) {
+                            throw new IllegalArgumentException("Truncated escape");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(json, position, position + 4, 16));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Invalid escape");
+                        }
+                        position += 4;
+                    }
+                    default -> throw new IllegalArgumentException("Invalid escape \\" + escaped);
+                }
+            }
+        }
+
+        void expect(char c) {
+            skipWhitespace();
+            if (position >= json.length() || json.charAt(position) != c) {
+                throw new IllegalArgumentException("Expected '" + c + "' at " + position);
+            }
+            position++;
+        }
+
+        void skipWhitespace() {
+            while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+                position++;
+            }
+        }
+    }
+}
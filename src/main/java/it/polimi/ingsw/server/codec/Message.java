@@ -0,0 +1,9 @@
+package it.polimi.ingsw.server.codec;
+
+import java.io.Serializable;
+
+// A structured message, as opposed to a line of chat text: from a client, or a state update from the server.
+// Every type has a Schema in Schemas; Serializable only so Java serialization can be benchmarked against
+// the codecs.
+public sealed interface Message extends Serializable permits ChatMessage, RoomChatMessage, StateAck, StateMessage {
+}
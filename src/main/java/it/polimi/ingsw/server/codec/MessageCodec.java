@@ -0,0 +1,36 @@
+package it.polimi.ingsw.server.codec;
+
+import java.nio.charset.StandardCharsets;
+
+// Encodes structured messages for the wire. Both servers accept either codec on the same channel, since a
+// JSON object starts with '{' and a binary message with a small type id; see forPayload.
+public interface MessageCodec {
+
+    MessageCodec BINARY = new BinaryCodec();
+    MessageCodec JSON = new JsonCodec();
+
+    String name();
+
+    byte[] encode(Message message);
+
+    // Throws IllegalArgumentException when the bytes are not a message this codec understands.
+    Message decode(byte[] bytes, int offset, int length);
+
+    default Message decode(byte[] bytes) {
+        return decode(bytes, 0, bytes.length);
+    }
+
+    static MessageCodec forPayload(byte[] bytes, int offset, int length) {
+        return length > 0 && bytes[offset] == '{' ? JSON : BINARY;
+    }
+
+    // Text frames and lines are plain UTF-8 with no schema, so line-mode clients can read them as they are.
+    static byte[] encodeText(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // The codec clients are told to use: -Dcodec=json while debugging, binary otherwise.
+    static MessageCodec fromSystemProperties() {
+        return "json".equalsIgnoreCase(System.getProperty("codec")) ? JSON : BINARY;
+    }
+}
@@ -0,0 +1,5 @@
+package it.polimi.ingsw.server.codec;
+
+// Published to one room the sender has joined.
+public record RoomChatMessage(String room, String text) implements Message {
+}
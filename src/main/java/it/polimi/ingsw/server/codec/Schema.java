@@ -0,0 +1,10 @@
+package it.polimi.ingsw.server.codec;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+// How one message type maps to fields. The id goes on the wire in binary, the name in JSON; both must stay
+// stable once clients depend on them, and new fields go at the end.
+public record Schema<T extends Message>(int id, String name, BiConsumer<T, FieldWriter> writer,
+                                        Function<FieldReader, T> reader) {
+}
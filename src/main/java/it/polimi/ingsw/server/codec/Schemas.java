@@ -0,0 +1,76 @@
+package it.polimi.ingsw.server.codec;
+
+import java.util.Map;
+
+// Every message schema, written out by hand so neither codec needs reflection.
+public final class Schemas {
+
+    public static final Schema<ChatMessage> CHAT = new Schema<>(1, "chat",
+            (message, out) -> out.writeString("text", message.text()),
+            in -> new ChatMessage(in.readString("text")));
+
+    public static final Schema<RoomChatMessage> ROOM_CHAT = new Schema<>(2, "roomChat",
+            (message, out) -> {
+                out.writeString("room", message.room());
+                out.writeString("text", message.text());
+            },
+            in -> new RoomChatMessage(in.readString("room"), in.readString("text")));
+
+    public static final Schema<StateAck> STATE_ACK = new Schema<>(3, "stateAck",
+            (message, out) -> {
+                out.writeString("gameId", message.gameId());
+                out.writeLong("version", message.version());
+            },
+            in -> new StateAck(in.readString("gameId"), in.readLong("version")));
+
+    public static final Schema<StateMessage> STATE = new Schema<>(4, "state",
+            (message, out) -> {
+                out.writeString("gameId", message.gameId());
+                out.writeLong("baseVersion", message.baseVersion());
+                out.writeLong("version", message.version());
+                out.writeBytes("payload", message.payload());
+            },
+            in -> new StateMessage(in.readString("gameId"), in.readLong("baseVersion"), in.readLong("version"),
+                    in.readBytes("payload")));
+
+    private static final Schema<?>[] BY_ID = {null, CHAT, ROOM_CHAT, STATE_ACK, STATE};
+    private static final Map<String, Schema<?>> BY_NAME = Map.of(
+            CHAT.name(), CHAT, ROOM_CHAT.name(), ROOM_CHAT, STATE_ACK.name(), STATE_ACK, STATE.name(), STATE);
+
+    private Schemas() {
+    }
+
+    static Schema<?> byId(int id) {
+        if (id <= 0 || id >= BY_ID.length) {
+            throw new IllegalArgumentException("Unknown message type: " + id);
+        }
+        return BY_ID[id];
+    }
+
+    static Schema<?> byName(String name) {
+        Schema<?> schema = BY_NAME.get(name);
+        if (schema == null) {
+            throw new IllegalArgumentException("Unknown message type: " + name);
+        }
+        return schema;
+    }
+
+    // Writes the message's fields with its own schema.
+    static void write(Message message, FieldWriter out) {
+        switch (message) {
+            case ChatMessage chat -> CHAT.writer().accept(chat, out);
+            case RoomChatMessage roomChat -> ROOM_CHAT.writer().accept(roomChat, out);
+            case StateAck ack -> STATE_ACK.writer().accept(ack, out);
+            case StateMessage state -> STATE.writer().accept(state, out);
+        }
+    }
+
+    static Schema<?> of(Message message) {
+        return switch (message) {
+            case ChatMessage _ -> CHAT;
+            case RoomChatMessage _ -> ROOM_CHAT;
+            case StateAck _ -> STATE_ACK;
+            case StateMessage _ -> STATE;
+        };
+    }
+}
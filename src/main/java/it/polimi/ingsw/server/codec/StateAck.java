@@ -0,0 +1,5 @@
+package it.polimi.ingsw.server.codec;
+
+// The game state version a client applied; see GameStateSync.
+public record StateAck(String gameId, long version) implements Message {
+}
@@ -0,0 +1,6 @@
+package it.polimi.ingsw.server.codec;
+
+// A game state update from the server: a full snapshot when baseVersion is 0, otherwise a delta from it.
+// The payload is shared, not copied, so equals compares it by identity like any record array component.
+public record StateMessage(String gameId, long baseVersion, long version, byte[] payload) implements Message {
+}
@@ -0,0 +1,41 @@
+package it.polimi.ingsw.server.history;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+// "/history [sequence]" for the text protocol: replies with the retained messages after the given
+// sequence (or the most recent ones) as "#<sequence> <text>" lines, at most MAX_REPLY of them per request.
+public final class HistoryCommand {
+
+    public static final int MAX_REPLY = 256;
+
+    private HistoryCommand() {
+    }
+
+    // Returns false when the line is not a history command.
+    public static boolean handle(MessageHistory history, String line, Consumer<String> reply) {
+        if (!line.equals("/history") && !line.startsWith("/history ")) {
+            return false;
+        }
+        String argument = line.substring("/history".length()).strip();
+        List<MessageHistory.Entry> entries;
+        if (argument.isEmpty()) {
+            entries = history.last(MAX_REPLY);
+        } else {
+            try {
+                entries = history.since(Long.parseLong(argument), MAX_REPLY);
+            } catch (NumberFormatException e) {
+                reply.accept("Usage: /history [sequence]");
+                return true;
+            }
+        }
+        for (MessageHistory.Entry entry : entries) {
+            reply.accept("#" + entry.sequence() + " " + entry.text());
+        }
+        long last = entries.isEmpty() ? history.getLastSequence() : entries.getLast().sequence();
+        reply.accept(last < history.getLastSequence()
+                ? "More history available: /history " + last
+                : "End of history at #" + last);
+        return true;
+    }
+}
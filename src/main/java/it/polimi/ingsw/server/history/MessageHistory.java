@@ -0,0 +1,124 @@
+package it.polimi.ingsw.server.history;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+// Recent broadcasts, numbered from 1 in publish order. The text is kept off-heap in one direct buffer used
+// as a byte ring, with a small on-heap index of where each of the last maxMessages entries starts. An entry
+// is gone once either its index slot or its bytes have been reused.
+//
+// Only the bus thread appends. Readers copy one entry at a time under an optimistic stamp, so a replay of
+// any length never holds up an append for more than a single copy.
+public final class MessageHistory {
+
+    public record Entry(long sequence, byte[] utf8) {
+        public String text() {
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+    }
+
+    private final ByteBuffer data;
+    private final int capacity;
+    private final long[] positions;
+    private final int[] lengths;
+    private final int mask;
+    private final StampedLock lock = new StampedLock();
+    private long writePosition;
+    private volatile long lastSequence;
+
+    public MessageHistory(int maxMessages, int capacityBytes) {
+        if (Integer.bitCount(maxMessages) != 1) {
+            throw new IllegalArgumentException("History length must be a power of two: " + maxMessages);
+        }
+        this.data = ByteBuffer.allocateDirect(capacityBytes);
+        this.capacity = capacityBytes;
+        this.positions = new long[maxMessages];
+        this.lengths = new int[maxMessages];
+        this.mask = maxMessages - 1;
+    }
+
+    // Returns the new entry's sequence. A message larger than the whole buffer still takes a sequence
+    // number but is not retained.
+    public long append(byte[] utf8) {
+        long stamp = lock.writeLock();
+        try {
+            long sequence = lastSequence + 1;
+            int slot = (int) (sequence & mask);
+            if (utf8.length <= capacity) {
+                int start = (int) (writePosition % capacity);
+                int first = Math.min(utf8.length, capacity - start);
+                data.put(start, utf8, 0, first);
+                data.put(0, utf8, first, utf8.length - first);
+                positions[slot] = writePosition;
+                lengths[slot] = utf8.length;
+                writePosition += utf8.length;
+            } else {
+                positions[slot] = writePosition;
+                lengths[slot] = -1;
+            }
+            lastSequence = sequence;
+            return sequence;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Zero until the first message is recorded.
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    // Up to limit retained entries with a sequence greater than afterSequence, oldest first.
+    public List<Entry> since(long afterSequence, int limit) {
+        long last = lastSequence;
+        long from = Math.max(afterSequence + 1, last - mask);
+        List<Entry> entries = new ArrayList<>();
+        for (long sequence = Math.max(from, 1); sequence <= last && entries.size() < limit; sequence++) {
+            Entry entry = read(sequence);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    public List<Entry> last(int count) {
+        return since(lastSequence - count, count);
+    }
+
+    private Entry read(long sequence) {
+        long stamp = lock.tryOptimisticRead();
+        Entry entry = copy(sequence);
+        if (lock.validate(stamp)) {
+            return entry;
+        }
+        stamp = lock.readLock();
+        try {
+            return copy(sequence);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // May see a half-written entry when racing an append; the caller only trusts it after validation.
+    private Entry copy(long sequence) {
+        if (sequence > lastSequence || lastSequence - sequence > mask) {
+            return null;
+        }
+        int slot = (int) (sequence & mask);
+        long position = positions[slot];
+        int length = lengths[slot];
+        if (length < 0 || length > capacity || writePosition - position > capacity) {
+            return null;
+        }
+        byte[] utf8 = new byte[length];
+        int start = (int) (position % capacity);
+        int first = Math.min(length, capacity - start);
+        data.get(start, utf8, 0, first);
+        data.get(0, utf8, first, length - first);
+        return new Entry(sequence, utf8);
+    }
+}
@@ -0,0 +1,12 @@
+package it.polimi.ingsw.server.journal;
+
+// When the journal forces written records to disk. Segments are always forced when they are rolled and
+// when the journal is closed.
+public enum FsyncPolicy {
+    // Leave write-back to the operating system.
+    NEVER,
+    // Group commit: one force after each run of batches the writer drained together.
+    BATCH,
+    // At most one force per fsync interval while there are unforced records.
+    INTERVAL
+}
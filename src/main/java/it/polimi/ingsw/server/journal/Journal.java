@@ -0,0 +1,269 @@
+package it.polimi.ingsw.server.journal;
+
+import it.polimi.ingsw.server.bus.BusAdapter;
+import it.polimi.ingsw.server.bus.BusMessage;
+import it.polimi.ingsw.server.metrics.MetricsRegistry;
+import it.polimi.ingsw.server.metrics.TransportMetrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+// Append-only journal of every message dispatched on the bus, kept in a directory of memory-mapped
+// segments named after their first sequence number. A record's sequence is the bus sequence of its message
+// plus the last sequence recovered at startup, so numbering carries on across restarts and a batch the
+// journal dropped leaves a gap. Records are stamped with the message's publish time.
+//
+// As a bus adapter it only queues the batch: a dedicated writer thread appends whatever has queued up and
+// then applies the fsync policy, so several batches share one force. If the writer falls so far behind
+// that its queue fills, batches are dropped and counted rather than slowing the bus down. When a segment
+// is full a new one is started and the oldest are deleted beyond the retention count.
+public class Journal implements BusAdapter {
+
+    private static final Logger LOGGER = Logger.getLogger(Journal.class.getName());
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    public static final String DIRECTORY_PROPERTY = "journal.dir";
+    private static final int DEFAULT_SEGMENT_BYTES = 16 * 1024 * 1024;
+    private static final int DEFAULT_RETAIN_SEGMENTS = 8;
+    private static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 100;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int retainSegments;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    private final List<JournalSegment> segments = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<List<BusMessage>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final LongAdder dropped = new LongAdder();
+    private final TransportMetrics metrics = MetricsRegistry.global().transport("journal");
+    private final Thread writer;
+    private final long sequenceOffset;
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+    private volatile boolean running = true;
+    private volatile long lastSequence;
+    private boolean dirty;
+    private long lastForceNanos = System.nanoTime();
+
+    public Journal(Path directory, int segmentBytes, int retainSegments, FsyncPolicy fsyncPolicy,
+                   long fsyncIntervalMillis) throws IOException {
+        if (retainSegments < 1) {
+            throw new IllegalArgumentException("At least one segment must be retained: " + retainSegments);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.retainSegments = retainSegments;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+        Files.createDirectories(directory);
+        recover();
+        this.sequenceOffset = lastSequence;
+        metrics.setOutboundQueueDepthGauge(queue::size);
+        this.writer = Thread.ofPlatform().daemon().name("journal-writer").start(this::writeLoop);
+    }
+
+    // Returns null when no journal directory is configured. The other settings are journal.segmentBytes,
+    // journal.retainSegments, journal.fsync (NEVER, BATCH or INTERVAL) and journal.fsyncMillis.
+    public static Journal fromSystemProperties() throws IOException {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        if (directory == null) {
+            return null;
+        }
+        return new Journal(Path.of(directory),
+                Integer.getInteger("journal.segmentBytes", DEFAULT_SEGMENT_BYTES),
+                Integer.getInteger("journal.retainSegments", DEFAULT_RETAIN_SEGMENTS),
+                FsyncPolicy.valueOf(System.getProperty("journal.fsync", FsyncPolicy.BATCH.name()).toUpperCase()),
+                Long.getLong("journal.fsyncMillis", DEFAULT_FSYNC_INTERVAL_MILLIS));
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().endsWith(JournalSegment.SUFFIX)).sorted().toList();
+        }
+        for (Path file : files) {
+            JournalSegment segment = JournalSegment.open(file);
+            segments.add(segment);
+            lastSequence = Math.max(lastSequence, segment.getLastSequence());
+        }
+        if (segments.isEmpty()) {
+            segments.add(JournalSegment.create(directory, 1, segmentBytes));
+        } else if (activeSegment().isEmpty() && activeSegment().getBaseSequence() == lastSequence + 1) {
+            // A tail that never got a record, say after a restart with no traffic, already has the name a
+            // new segment would get, so it is reused.
+            applyRetention();
+        } else {
+            // Never append after a recovered tail: whatever follows a torn record stays where it is.
+            segments.add(JournalSegment.create(directory, lastSequence + 1, segmentBytes));
+            applyRetention();
+        }
+        LOGGER.info("Journal in " + directory + " recovered " + files.size() + " segments up to sequence " + lastSequence);
+    }
+
+    @Override
+    public void deliver(List<BusMessage> batch) {
+        if (!queue.offer(batch)) {
+            dropped.add(batch.size());
+        }
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    // Up to limit records starting at fromSequence, oldest first.
+    public List<JournalRecord> read(long fromSequence, int limit) {
+        List<JournalRecord> records = new ArrayList<>();
+        List<JournalSegment> snapshot = List.copyOf(segments);
+        for (int i = 0; i < snapshot.size() && records.size() < limit; i++) {
+            JournalSegment segment = snapshot.get(i);
+            boolean hasLater = i + 1 < snapshot.size() && snapshot.get(i + 1).getBaseSequence() <= fromSequence;
+            if (!hasLater && !segment.isEmpty()) {
+                segment.read(fromSequence, limit, records);
+            }
+        }
+        return records;
+    }
+
+    // The first retained sequence stamped at or after the given time, or the next sequence to be written.
+    public long sequenceAt(long timestampMillis) {
+        for (JournalSegment segment : List.copyOf(segments)) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            long sequence = segment.sequenceAt(timestampMillis);
+            if (sequence >= 0) {
+                return sequence;
+            }
+        }
+        return lastSequence + 1;
+    }
+
+    public void close() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<List<BusMessage>> pending = new ArrayList<>();
+        long pollMillis = fsyncPolicy == FsyncPolicy.INTERVAL
+                ? Math.max(1, Math.min(IDLE_POLL_MILLIS, TimeUnit.NANOSECONDS.toMillis(fsyncIntervalNanos)))
+                : IDLE_POLL_MILLIS;
+        try {
+            while (running) {
+                List<BusMessage> batch;
+                try {
+                    batch = queue.poll(pollMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (batch != null) {
+                    pending.add(batch);
+                    queue.drainTo(pending);
+                    writeAll(pending);
+                    pending.clear();
+                }
+                maybeForce();
+            }
+            queue.drainTo(pending);
+            writeAll(pending);
+            activeSegment().force();
+            for (JournalSegment segment : segments) {
+                segment.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Journal writer stopped", e);
+        }
+    }
+
+    private void writeAll(List<List<BusMessage>> batches) throws IOException {
+        for (List<BusMessage> batch : batches) {
+            for (BusMessage message : batch) {
+                append(message);
+            }
+            metrics.messagesIn(batch.size());
+        }
+        dirty |= !batches.isEmpty();
+    }
+
+    private void append(BusMessage message) throws IOException {
+        long sequence = sequenceOffset + message.getSequence();
+        if (sequence <= lastSequence) {
+            LOGGER.warning("Message without a new bus sequence (" + message.getSequence() + "); skipped.");
+            return;
+        }
+        byte[] origin = message.getOrigin().getBytes(StandardCharsets.UTF_8);
+        byte[] payload = message.getUtf8();
+        int length = JournalSegment.HEADER_LENGTH + origin.length + payload.length;
+        if (length > segmentBytes) {
+            LOGGER.warning("Message of " + payload.length + " bytes does not fit in a journal segment; skipped.");
+            return;
+        }
+        if (scratch.capacity() < length) {
+            scratch = ByteBuffer.allocate(Math.max(length, scratch.capacity() * 2));
+        }
+        long timestamp = message.getPublishedMillis();
+        if (!activeSegment().append(sequence, timestamp, origin, payload, scratch)) {
+            roll(sequence);
+            activeSegment().append(sequence, timestamp, origin, payload, scratch);
+        }
+        lastSequence = sequence;
+    }
+
+    private void roll(long nextSequence) throws IOException {
+        activeSegment().force();
+        segments.add(JournalSegment.create(directory, nextSequence, segmentBytes));
+        applyRetention();
+    }
+
+    private void applyRetention() throws IOException {
+        while (segments.size() > retainSegments) {
+            JournalSegment oldest = segments.removeFirst();
+            oldest.delete();
+            LOGGER.info("Deleted journal segment " + oldest.getPath().getFileName());
+        }
+    }
+
+    private void maybeForce() {
+        if (!dirty) {
+            return;
+        }
+        long now = System.nanoTime();
+        boolean force = switch (fsyncPolicy) {
+            case NEVER -> false;
+            case BATCH -> true;
+            case INTERVAL -> now - lastForceNanos >= fsyncIntervalNanos;
+        };
+        if (force) {
+            activeSegment().force();
+            lastForceNanos = now;
+            dirty = false;
+        }
+    }
+
+    private JournalSegment activeSegment() {
+        return segments.getLast();
+    }
+}
@@ -0,0 +1,10 @@
+package it.polimi.ingsw.server.journal;
+
+import java.nio.charset.StandardCharsets;
+
+public record JournalRecord(long sequence, long timestampMillis, String origin, byte[] utf8) {
+
+    public String text() {
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,217 @@
+package it.polimi.ingsw.server.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.CRC32C;
+
+// One memory-mapped journal file. Records are laid out back to back as
+//   [int length][int crc32c][long sequence][long timestamp][byte originLength][origin][payload]
+// where length counts everything after itself and the checksum covers everything after the checksum. The
+// file is zero-filled, so a zero length marks the end. Only the journal's writer thread appends; readers
+// only look below the committed position, which is published after each record is complete.
+class JournalSegment {
+
+    static final String SUFFIX = ".journal";
+    static final int HEADER_LENGTH = 4 + 4 + 8 + 8 + 1;
+    private static final int INDEX_INTERVAL = 64;
+
+    private final Path path;
+    private final long baseSequence;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final CRC32C crc = new CRC32C();
+    // Sparse index, one entry every INDEX_INTERVAL records; guarded by this.
+    private final List<long[]> index = new ArrayList<>();
+    private int records;
+    private long lastSequence;
+    private long firstTimestamp = -1;
+    private volatile int committedPosition;
+
+    private JournalSegment(Path path, long baseSequence, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.baseSequence = baseSequence;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.lastSequence = baseSequence - 1;
+    }
+
+    static JournalSegment create(Path directory, long baseSequence, int size) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", baseSequence, SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new JournalSegment(path, baseSequence, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+
+    // Scans the whole file to rebuild the index, stopping at the first torn, corrupt or out-of-order record.
+    // Sequences only have to increase: a gap is where the journal dropped a batch.
+    static JournalSegment open(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        long baseSequence = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        JournalSegment segment = new JournalSegment(path, baseSequence, channel,
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        segment.recover();
+        return segment;
+    }
+
+    private void recover() {
+        int position = 0;
+        while (true) {
+            JournalRecord record = decode(position, buffer.capacity());
+            if (record == null || record.sequence() <= lastSequence) {
+                break;
+            }
+            indexRecord(record.sequence(), record.timestampMillis(), position);
+            position += 4 + buffer.getInt(position);
+        }
+        committedPosition = position;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getBaseSequence() {
+        return baseSequence;
+    }
+
+    synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    synchronized long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    synchronized boolean isEmpty() {
+        return records == 0;
+    }
+
+    // Returns false, writing nothing, when the record does not fit in what is left of the segment.
+    boolean append(long sequence, long timestamp, byte[] origin, byte[] payload, ByteBuffer scratch) {
+        int length = HEADER_LENGTH + origin.length + payload.length;
+        int position = committedPosition;
+        if (position + length > buffer.capacity()) {
+            return false;
+        }
+        scratch.clear();
+        scratch.putInt(length - 4).putInt(0).putLong(sequence).putLong(timestamp).put((byte) origin.length).put(origin).put(payload);
+        crc.reset();
+        crc.update(scratch.array(), 8, length - 8);
+        scratch.putInt(4, (int) crc.getValue());
+        buffer.put(position, scratch.array(), 0, length);
+        synchronized (this) {
+            indexRecord(sequence, timestamp, position);
+        }
+        committedPosition = position + length;
+        return true;
+    }
+
+    private void indexRecord(long sequence, long timestamp, int position) {
+        if (records % INDEX_INTERVAL == 0) {
+            index.add(new long[]{sequence, timestamp, position});
+        }
+        if (records == 0) {
+            firstTimestamp = timestamp;
+        }
+        records++;
+        lastSequence = sequence;
+    }
+
+    // Adds records with a sequence of at least fromSequence to out, up to limit records in total.
+    void read(long fromSequence, int limit, List<JournalRecord> out) {
+        int position = (int) seek(entry -> entry[0] <= fromSequence);
+        int end = committedPosition;
+        while (position < end && out.size() < limit) {
+            JournalRecord record = decode(position, end);
+            if (record == null) {
+                return;
+            }
+            if (record.sequence() >= fromSequence) {
+                out.add(record);
+            }
+            position += 4 + buffer.getInt(position);
+        }
+    }
+
+    // The first sequence stamped at or after the given time, or -1 if every record here is older.
+    long sequenceAt(long timestampMillis) {
+        int position = (int) seek(entry -> entry[1] < timestampMillis);
+        int end = committedPosition;
+        while (position < end) {
+            JournalRecord record = decode(position, end);
+            if (record == null) {
+                return -1;
+            }
+            if (record.timestampMillis() >= timestampMillis) {
+                return record.sequence();
+            }
+            position += 4 + buffer.getInt(position);
+        }
+        return -1;
+    }
+
+    // Position of the last index entry matching the predicate, which must hold for a prefix of the index.
+    private synchronized long seek(Predicate<long[]> before) {
+        int low = 0;
+        int high = index.size() - 1;
+        long position = 0;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (before.test(index.get(middle))) {
+                position = index.get(middle)[2];
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return position;
+    }
+
+    private JournalRecord decode(int position, int end) {
+        if (position + HEADER_LENGTH > end) {
+            return null;
+        }
+        int length = buffer.getInt(position);
+        if (length < HEADER_LENGTH - 4 || position + 4 + length > end) {
+            return null;
+        }
+        CRC32C check = new CRC32C();
+        check.update(buffer.slice(position + 8, length - 4));
+        if ((int) check.getValue() != buffer.getInt(position + 4)) {
+            return null;
+        }
+        long sequence = buffer.getLong(position + 8);
+        long timestamp = buffer.getLong(position + 16);
+        int originLength = buffer.get(position + 24) & 0xFF;
+        if (HEADER_LENGTH - 4 + originLength > length) {
+            return null;
+        }
+        byte[] origin = new byte[originLength];
+        buffer.get(position + 25, origin);
+        byte[] payload = new byte[length - (HEADER_LENGTH - 4) - originLength];
+        buffer.get(position + 25 + originLength, payload);
+        return new JournalRecord(sequence, timestamp, new String(origin, StandardCharsets.UTF_8), payload);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+}
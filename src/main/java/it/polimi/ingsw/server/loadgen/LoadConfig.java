@@ -0,0 +1,54 @@
+package it.polimi.ingsw.server.loadgen;
+
+record LoadConfig(String transport, String host, int port, int clients, int senders, double ratePerSender,
+                  int messageSize, int durationSeconds, boolean binary) {
+
+    private static final String USAGE = """
+            Usage: LoadGenerator [options]
+              --transport socket|rmi   transport to drive (default socket)
+              --host HOST              server host (default localhost)
+              --port PORT              server port (default 12345 for socket, 1099 for rmi)
+              --clients N              connections or callback registrations to open (default 100)
+              --senders N              how many of them publish messages (default 1)
+              --rate R                 messages per second per sender (default 10)
+              --size BYTES             approximate message size (default 64)
+              --duration SECONDS       measurement duration (default 30)
+              --binary                 negotiate binary framing on socket connections
+            """;
+
+    static LoadConfig parse(String[] args) {
+        String transport = "socket";
+        String host = "localhost";
+        int port = -1;
+        int clients = 100;
+        int senders = 1;
+        double rate = 10;
+        int size = 64;
+        int duration = 30;
+        boolean binary = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--transport" -> transport = args[++i];
+                case "--host" -> host = args[++i];
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--clients" -> clients = Integer.parseInt(args[++i]);
+                case "--senders" -> senders = Integer.parseInt(args[++i]);
+                case "--rate" -> rate = Double.parseDouble(args[++i]);
+                case "--size" -> size = Integer.parseInt(args[++i]);
+                case "--duration" -> duration = Integer.parseInt(args[++i]);
+                case "--binary" -> binary = true;
+                default -> throw new IllegalArgumentException("Unknown option " + args[i] + "\n" + USAGE);
+            }
+        }
+        if (!transport.equals("socket") && !transport.equals("rmi")) {
+            throw new IllegalArgumentException("Unknown transport " + transport + "\n" + USAGE);
+        }
+        if (port < 0) {
+            port = transport.equals("socket") ? 12345 : 1099;
+        }
+        if (senders > clients) {
+            throw new IllegalArgumentException("More senders than clients\n" + USAGE);
+        }
+        return new LoadConfig(transport, host, port, clients, senders, rate, size, duration, binary);
+    }
+}
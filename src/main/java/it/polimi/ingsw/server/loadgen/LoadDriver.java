@@ -0,0 +1,12 @@
+package it.polimi.ingsw.server.loadgen;
+
+interface LoadDriver {
+    void connect() throws Exception;
+
+    void send(int client, String message) throws Exception;
+
+    // How many clients should receive each message that is sent.
+    long recipientsPerMessage();
+
+    void close();
+}
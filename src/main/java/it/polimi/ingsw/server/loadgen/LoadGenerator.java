@@ -0,0 +1,95 @@
+package it.polimi.ingsw.server.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Headless, scriptable load against CombinedServerExecutor (or either server alone), e.g.
+//   java it.polimi.ingsw.server.loadgen.LoadGenerator --transport socket --clients 2000 --senders 20 --rate 50
+// Rates above the server's per-client limit need it started with -Dadmission.messagesPerSecond=0.
+public class LoadGenerator {
+
+    private static final Logger LOGGER = Logger.getLogger(LoadGenerator.class.getName());
+    private static final long DRAIN_MILLIS = 2000;
+
+    private volatile boolean running = true;
+
+    public static void main(String[] args) {
+        LoadConfig config;
+        try {
+            config = LoadConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        int exitCode = new LoadGenerator().run(config);
+        System.exit(exitCode);
+    }
+
+    int run(LoadConfig config) {
+        LoadStats stats = new LoadStats();
+        LoadDriver driver = config.transport().equals("socket")
+                ? new SocketLoadDriver(config, stats)
+                : new RmiLoadDriver(config, stats);
+        try {
+            LOGGER.info("Opening " + config.clients() + " " + config.transport() + " clients to " + config.host() + ":" + config.port() + "...");
+            driver.connect();
+            LOGGER.info("All clients connected; starting " + config.senders() + " senders at " + config.ratePerSender() + " msg/s each.");
+
+            stats.startRecording();
+            long start = System.nanoTime();
+            List<Thread> senders = new ArrayList<>();
+            for (int i = 0; i < config.senders(); i++) {
+                int sender = i;
+                senders.add(Thread.ofVirtual().name("loadgen-sender-" + i).start(() -> sendLoop(config, driver, stats, sender)));
+            }
+
+            long previousSent = 0;
+            long previousReceived = 0;
+            for (int second = 1; second <= config.durationSeconds(); second++) {
+                Thread.sleep(1000);
+                System.out.println("[" + second + "s] " + stats.progressLine(previousSent, previousReceived, 1.0));
+                previousSent = stats.sentCount();
+                previousReceived = stats.receivedCount();
+            }
+            running = false;
+            for (Thread sender : senders) {
+                sender.join();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Thread.sleep(DRAIN_MILLIS);
+            stats.stopRecording();
+
+            System.out.print(stats.report(seconds, stats.sentCount() * driver.recipientsPerMessage()));
+            return 0;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Load generation failed: " + e.getMessage(), e);
+            return 1;
+        } finally {
+            driver.close();
+        }
+    }
+
+    private void sendLoop(LoadConfig config, LoadDriver driver, LoadStats stats, int sender) {
+        long interval = (long) (1_000_000_000L / config.ratePerSender());
+        // Senders are staggered so they do not all fire on the same tick.
+        long next = System.nanoTime() + interval * sender / Math.max(1, config.senders());
+        while (running) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+            try {
+                driver.send(sender, LoadStats.payload(sender, next, config.messageSize()));
+                stats.onSent();
+            } catch (Exception e) {
+                stats.onError();
+            }
+            next += interval;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package it.polimi.ingsw.server.loadgen;
+
+import it.polimi.ingsw.server.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Messages carry "LG <sender> <send nanoTime>" so that any receiver in this JVM can compute end-to-end latency.
+class LoadStats {
+
+    private static final String MARKER = "LG ";
+    private static final double[] PERCENTILES = {50, 75, 90, 95, 99, 99.9, 99.99};
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private volatile boolean recording;
+
+    // Stamped with the scheduled send time rather than the actual one, so a stalled sender shows up as
+    // latency instead of silently sending less (coordinated omission).
+    static String payload(int sender, long scheduledNanos, int size) {
+        String header = MARKER + sender + " " + scheduledNanos + " ";
+        return size > header.length() ? header + "x".repeat(size - header.length()) : header;
+    }
+
+    void startRecording() {
+        latency.reset();
+        sent.reset();
+        received.reset();
+        errors.reset();
+        recording = true;
+    }
+
+    void stopRecording() {
+        recording = false;
+    }
+
+    void onSent() {
+        if (recording) sent.increment();
+    }
+
+    void onError() {
+        errors.increment();
+    }
+
+    void onReceived(String message) {
+        long now = System.nanoTime();
+        int marker = message.indexOf(MARKER);
+        if (marker < 0 || !recording) {
+            return;
+        }
+        int senderEnd = message.indexOf(' ', marker + MARKER.length());
+        int timestampEnd = message.indexOf(' ', senderEnd + 1);
+        if (senderEnd < 0) {
+            return;
+        }
+        try {
+            long sentAt = Long.parseLong(message, senderEnd + 1, timestampEnd < 0 ? message.length() : timestampEnd, 10);
+            latency.record(now - sentAt);
+            received.increment();
+        } catch (NumberFormatException e) {
+            errors.increment();
+        }
+    }
+
+    String progressLine(long previousSent, long previousReceived, double seconds) {
+        return String.format("sent=%d (%.0f/s) received=%d (%.0f/s) errors=%d p50=%.2fms p99=%.2fms",
+                sent.sum(), (sent.sum() - previousSent) / seconds,
+                received.sum(), (received.sum() - previousReceived) / seconds,
+                errors.sum(), latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(99) / 1e6);
+    }
+
+    long sentCount() {
+        return sent.sum();
+    }
+
+    long receivedCount() {
+        return received.sum();
+    }
+
+    String report(double seconds, long expectedDeliveries) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Duration: %.1fs%n", seconds));
+        report.append(String.format("Sent: %d (%.1f msg/s)%n", sent.sum(), sent.sum() / seconds));
+        report.append(String.format("Delivered: %d of %d expected (%.1f msg/s)%n", received.sum(), expectedDeliveries, received.sum() / seconds));
+        report.append(String.format("Errors: %d (%.3f%% of sends)%n", errors.sum(), sent.sum() == 0 ? 0 : 100.0 * errors.sum() / sent.sum()));
+        report.append(String.format("Broadcast latency (ms), %d samples:%n", latency.getCount()));
+        report.append(String.format("%12s %12s%n", "Percentile", "Value"));
+        for (double percentile : PERCENTILES) {
+            report.append(String.format("%12.3f %12.3f%n", percentile, latency.getValueAtPercentile(percentile) / 1e6));
+        }
+        report.append(String.format("%12s %12.3f%n", "max", latency.getMax() / 1e6));
+        report.append(String.format("%12s %12.3f%n", "mean", latency.getMean() / 1e6));
+        return report.toString();
+    }
+}
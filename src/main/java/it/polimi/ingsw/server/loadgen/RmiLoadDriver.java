@@ -0,0 +1,86 @@
+package it.polimi.ingsw.server.loadgen;
+
+import it.polimi.ingsw.server.rmi.ProxyClient;
+import it.polimi.ingsw.server.rmi.RemoteService;
+import it.polimi.ingsw.server.rmi.RmiSocketConfig;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
+
+class RmiLoadDriver implements LoadDriver {
+
+    private static final String SERVICE_NAME = "GalaxyTruckerService";
+
+    private final LoadConfig config;
+    private final LoadStats stats;
+    private final LoadCallback[] callbacks;
+    private final ProxyClient[] stubs;
+    // The same -Drmi.* socket options as ClientApp, so runs can compare them.
+    private final RmiSocketConfig socketConfig = RmiSocketConfig.fromSystemProperties();
+    private RemoteService serverService;
+
+    private static final class LoadCallback implements ProxyClient {
+        private final LoadStats stats;
+
+        private LoadCallback(LoadStats stats) {
+            this.stats = stats;
+        }
+
+        @Override
+        public void showMessage(String message) {
+            stats.onReceived(message);
+        }
+
+        @Override
+        public void showMessages(List<String> messages) {
+            for (String message : messages) {
+                stats.onReceived(message);
+            }
+        }
+    }
+
+    RmiLoadDriver(LoadConfig config, LoadStats stats) {
+        this.config = config;
+        this.stats = stats;
+        this.callbacks = new LoadCallback[config.clients()];
+        this.stubs = new ProxyClient[config.clients()];
+    }
+
+    @Override
+    public void connect() throws Exception {
+        serverService = (RemoteService) LocateRegistry.getRegistry(config.host(), config.port()).lookup(SERVICE_NAME);
+        for (int i = 0; i < callbacks.length; i++) {
+            callbacks[i] = new LoadCallback(stats);
+            stubs[i] = (ProxyClient) socketConfig.export(callbacks[i], 0);
+            serverService.registerClient(stubs[i]);
+        }
+    }
+
+    @Override
+    public void send(int client, String message) throws RemoteException {
+        serverService.broadcastMessage(message);
+    }
+
+    @Override
+    public long recipientsPerMessage() {
+        return callbacks.length;
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0; i < callbacks.length; i++) {
+            if (callbacks[i] == null) continue;
+            try {
+                serverService.removeClient(stubs[i]);
+                UnicastRemoteObject.unexportObject(callbacks[i], true);
+            } catch (NoSuchObjectException e) {
+                // already gone
+            } catch (RemoteException e) {
+                stats.onError();
+            }
+        }
+    }
+}
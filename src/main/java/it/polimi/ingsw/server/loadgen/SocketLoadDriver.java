@@ -0,0 +1,128 @@
+package it.polimi.ingsw.server.loadgen;
+
+import it.polimi.ingsw.server.socket.Frame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Blocking sockets with one virtual reader thread each, which comfortably holds thousands of connections.
+class SocketLoadDriver implements LoadDriver {
+
+    private final LoadConfig config;
+    private final LoadStats stats;
+    private final Connection[] connections;
+    private volatile boolean running = true;
+
+    private final class Connection {
+        private final Socket socket;
+        private final InputStream in;
+        private final DataOutputStream out;
+        private final CountDownLatch ready = new CountDownLatch(1);
+        private volatile boolean binary;
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        private void read() {
+            try {
+                byte[] type = new byte[1];
+                DataInputStream frames = new DataInputStream(in);
+                while (running) {
+                    if (binary) {
+                        byte[] payload = Frame.read(frames, type);
+                        stats.onReceived(new String(payload, StandardCharsets.UTF_8));
+                        continue;
+                    }
+                    String line = Frame.readLine(in);
+                    if (line == null) {
+                        break;
+                    }
+                    if (Frame.BINARY_ACCEPTED.equals(line)) {
+                        binary = true;
+                        ready.countDown();
+                    } else if (Frame.LINE_ONLY.equals(line)) {
+                        ready.countDown();
+                    } else {
+                        stats.onReceived(line);
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    stats.onError();
+                }
+            }
+        }
+
+        private synchronized void send(String message) throws IOException {
+            if (binary) {
+                Frame.writeText(out, message);
+            } else {
+                out.write(message.getBytes(StandardCharsets.UTF_8));
+                out.write('\n');
+            }
+            out.flush();
+        }
+    }
+
+    SocketLoadDriver(LoadConfig config, LoadStats stats) {
+        this.config = config;
+        this.stats = stats;
+        this.connections = new Connection[config.clients()];
+    }
+
+    @Override
+    public void connect() throws Exception {
+        for (int i = 0; i < connections.length; i++) {
+            Socket socket = new Socket(config.host(), config.port());
+            socket.setTcpNoDelay(true);
+            Connection connection = new Connection(socket);
+            connections[i] = connection;
+            Thread.ofVirtual().name("loadgen-reader-" + i).start(connection::read);
+            if (config.binary()) {
+                connection.out.write((Frame.BINARY_HANDSHAKE + "\n").getBytes(StandardCharsets.UTF_8));
+                connection.out.flush();
+            } else {
+                connection.ready.countDown();
+            }
+        }
+        for (Connection connection : connections) {
+            if (!connection.ready.await(10, TimeUnit.SECONDS)) {
+                throw new IOException("Server did not answer the binary handshake");
+            }
+        }
+    }
+
+    @Override
+    public void send(int client, String message) throws IOException {
+        connections[client].send(message);
+    }
+
+    @Override
+    public long recipientsPerMessage() {
+        return connections.length - 1;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (Connection connection : connections) {
+            if (connection == null) continue;
+            try {
+                connection.socket.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package it.polimi.ingsw.server.logging;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+// Asynchronous structured log in front of a java.util.logging Logger.
+//
+// Callers only claim a slot in a preallocated ring and store references to the event name and up to two
+// key/value pairs; the text is built and handed to the Logger by a single background thread. Events below
+// the Logger's level or skipped by their Sampler cost one volatile read, and a full ring drops the event
+// instead of blocking the caller, so network threads never format or do logging I/O.
+public final class EventLog {
+
+    private static final int DEFAULT_CAPACITY = 8192;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    // Logs one event out of every `rate` offered to it; the rate can be changed at runtime.
+    public static final class Sampler {
+        private final AtomicLong offered = new AtomicLong();
+        private volatile int rate;
+
+        public Sampler(int rate) {
+            setRate(rate);
+        }
+
+        public void setRate(int rate) {
+            if (rate < 1) {
+                throw new IllegalArgumentException("Sampling rate must be at least 1: " + rate);
+            }
+            this.rate = rate;
+        }
+
+        boolean sample() {
+            int current = rate;
+            return current == 1 || offered.getAndIncrement() % current == 0;
+        }
+    }
+
+    private final Logger sink;
+    private final int mask;
+    private final Level[] levels;
+    private final long[] timestamps;
+    private final String[] events;
+    private final String[] firstKeys;
+    private final Object[] firstValues;
+    private final String[] secondKeys;
+    private final Object[] secondValues;
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread drainer;
+    private volatile long consumed;
+    private volatile boolean drainerIdle;
+
+    public EventLog(Logger sink) {
+        this(sink, DEFAULT_CAPACITY);
+    }
+
+    public EventLog(Logger sink, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.sink = sink;
+        this.mask = capacity - 1;
+        this.levels = new Level[capacity];
+        this.timestamps = new long[capacity];
+        this.events = new String[capacity];
+        this.firstKeys = new String[capacity];
+        this.firstValues = new Object[capacity];
+        this.secondKeys = new String[capacity];
+        this.secondValues = new Object[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.drainer = Thread.ofPlatform().daemon().name("event-log-" + sink.getName()).start(this::drain);
+    }
+
+    public boolean isEnabled(Level level) {
+        return sink.isLoggable(level);
+    }
+
+    public void log(Level level, String event) {
+        log(level, null, event, null, null, null, null);
+    }
+
+    public void log(Level level, Sampler sampler, String event, String key, Object value) {
+        log(level, sampler, event, key, value, null, null);
+    }
+
+    public void log(Level level, Sampler sampler, String event, String firstKey, Object firstValue,
+                    String secondKey, Object secondValue) {
+        if (!sink.isLoggable(level) || (sampler != null && !sampler.sample())) {
+            return;
+        }
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed > mask) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) (sequence & mask);
+        levels[slot] = level;
+        timestamps[slot] = System.currentTimeMillis();
+        events[slot] = event;
+        firstKeys[slot] = firstKey;
+        firstValues[slot] = firstValue;
+        secondKeys[slot] = secondKey;
+        secondValues[slot] = secondValue;
+        published.set(slot, sequence + 1);
+        if (drainerIdle) {
+            LockSupport.unpark(drainer);
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private void drain() {
+        StringBuilder text = new StringBuilder(256);
+        while (true) {
+            long sequence = consumed;
+            int slot = (int) (sequence & mask);
+            if (published.get(slot) != sequence + 1) {
+                drainerIdle = true;
+                if (published.get(slot) != sequence + 1) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                drainerIdle = false;
+                continue;
+            }
+
+            text.setLength(0);
+            text.append(events[slot]);
+            appendField(text, firstKeys[slot], firstValues[slot]);
+            appendField(text, secondKeys[slot], secondValues[slot]);
+            LogRecord record = new LogRecord(levels[slot], text.toString());
+            record.setInstant(Instant.ofEpochMilli(timestamps[slot]));
+            record.setLoggerName(sink.getName());
+            record.setSourceClassName(sink.getName());
+            firstValues[slot] = null;
+            secondValues[slot] = null;
+            consumed = sequence + 1;
+            sink.log(record);
+        }
+    }
+
+    private static void appendField(StringBuilder text, String key, Object value) {
+        if (key != null) {
+            text.append(' ').append(key).append('=').append(value);
+        }
+    }
+}
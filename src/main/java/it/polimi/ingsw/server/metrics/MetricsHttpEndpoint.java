@@ -0,0 +1,39 @@
+package it.polimi.ingsw.server.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Logger;
+
+// Optional plain-text view of the registry on http://127.0.0.1:<port>/metrics, bound to loopback only.
+public class MetricsHttpEndpoint {
+
+    private static final Logger LOGGER = Logger.getLogger(MetricsHttpEndpoint.class.getName());
+
+    private final HttpServer server;
+
+    public MetricsHttpEndpoint(MetricsRegistry registry, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = registry.renderText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+        LOGGER.info("Metrics available on http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/metrics");
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+}
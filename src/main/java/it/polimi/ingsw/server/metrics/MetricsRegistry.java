@@ -0,0 +1,60 @@
+package it.polimi.ingsw.server.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Process-wide registry: each transport gets one TransportMetrics, exported as a JMX MBean under
+// it.polimi.ingsw.server:type=Metrics,transport=<name>, and rendered as text for MetricsHttpEndpoint.
+public class MetricsRegistry {
+
+    private static final Logger LOGGER = Logger.getLogger(MetricsRegistry.class.getName());
+    private static final long SAMPLE_INTERVAL_MILLIS = 1000;
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+
+    private final Map<String, TransportMetrics> transports = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("metrics-sampler").factory());
+
+    private MetricsRegistry() {
+        sampler.scheduleAtFixedRate(this::sampleRates, SAMPLE_INTERVAL_MILLIS, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    public TransportMetrics transport(String name) {
+        return transports.computeIfAbsent(name, this::register);
+    }
+
+    private TransportMetrics register(String name) {
+        TransportMetrics metrics = new TransportMetrics(name);
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            mBeanServer.registerMBean(metrics, new ObjectName("it.polimi.ingsw.server:type=Metrics,transport=" + name));
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Could not register JMX metrics for " + name, e);
+        }
+        return metrics;
+    }
+
+    private void sampleRates() {
+        for (TransportMetrics metrics : transports.values()) {
+            metrics.sampleRates(SAMPLE_INTERVAL_MILLIS / 1000.0);
+        }
+    }
+
+    public String renderText() {
+        StringBuilder out = new StringBuilder();
+        transports.values().forEach(metrics -> metrics.appendText(out));
+        return out.toString();
+    }
+}
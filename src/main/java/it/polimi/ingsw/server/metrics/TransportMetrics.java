@@ -0,0 +1,202 @@
+package it.polimi.ingsw.server.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Counters for one transport. Hot paths only call the increment/record methods, which never allocate;
+// gauges are suppliers evaluated when someone reads them.
+public class TransportMetrics implements TransportMetricsMBean {
+
+    private static final LongSupplier ZERO = () -> 0;
+
+    private final String name;
+    private final LongAdder messagesIn = new LongAdder();
+    private final LongAdder messagesOut = new LongAdder();
+    private final LongAdder callbackFailures = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder compressionSavedBytes = new LongAdder();
+    private final LatencyHistogram fanOutLatency = new LatencyHistogram();
+    private volatile LongSupplier activeConnections = ZERO;
+    private volatile LongSupplier outboundQueueDepth = ZERO;
+    private volatile LongSupplier executorActiveThreads = ZERO;
+    private volatile LongSupplier executorQueuedTasks = ZERO;
+    private volatile double messagesInPerSecond;
+    private volatile double messagesOutPerSecond;
+    private long lastMessagesIn;
+    private long lastMessagesOut;
+
+    TransportMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void messageIn() {
+        messagesIn.increment();
+    }
+
+    public void messagesIn(long count) {
+        messagesIn.add(count);
+    }
+
+    public void messagesOut(long count) {
+        messagesOut.add(count);
+    }
+
+    public void callbackFailure() {
+        callbackFailures.increment();
+    }
+
+    // Wire bytes, for transports that can see them.
+    public void bytesIn(long count) {
+        bytesIn.add(count);
+    }
+
+    public void bytesOut(long count) {
+        bytesOut.add(count);
+    }
+
+    public void compressionSaved(long count) {
+        compressionSavedBytes.add(count);
+    }
+
+    public LatencyHistogram fanOutLatency() {
+        return fanOutLatency;
+    }
+
+    public void setActiveConnectionsGauge(LongSupplier gauge) {
+        activeConnections = gauge;
+    }
+
+    public void setOutboundQueueDepthGauge(LongSupplier gauge) {
+        outboundQueueDepth = gauge;
+    }
+
+    public void setExecutorGauges(LongSupplier activeThreads, LongSupplier queuedTasks) {
+        executorActiveThreads = activeThreads;
+        executorQueuedTasks = queuedTasks;
+    }
+
+    // Called once per sampling interval by the registry.
+    synchronized void sampleRates(double seconds) {
+        long in = messagesIn.sum();
+        long out = messagesOut.sum();
+        messagesInPerSecond = (in - lastMessagesIn) / seconds;
+        messagesOutPerSecond = (out - lastMessagesOut) / seconds;
+        lastMessagesIn = in;
+        lastMessagesOut = out;
+    }
+
+    @Override
+    public long getActiveConnections() {
+        return activeConnections.getAsLong();
+    }
+
+    @Override
+    public long getMessagesIn() {
+        return messagesIn.sum();
+    }
+
+    @Override
+    public long getMessagesOut() {
+        return messagesOut.sum();
+    }
+
+    @Override
+    public double getMessagesInPerSecond() {
+        return messagesInPerSecond;
+    }
+
+    @Override
+    public double getMessagesOutPerSecond() {
+        return messagesOutPerSecond;
+    }
+
+    @Override
+    public long getFanOutCount() {
+        return fanOutLatency.getCount();
+    }
+
+    @Override
+    public double getFanOutP50Millis() {
+        return fanOutLatency.getValueAtPercentile(50) / 1e6;
+    }
+
+    @Override
+    public double getFanOutP99Millis() {
+        return fanOutLatency.getValueAtPercentile(99) / 1e6;
+    }
+
+    @Override
+    public double getFanOutMaxMillis() {
+        return fanOutLatency.getMax() / 1e6;
+    }
+
+    @Override
+    public long getOutboundQueueDepth() {
+        return outboundQueueDepth.getAsLong();
+    }
+
+    @Override
+    public long getCallbackFailures() {
+        return callbackFailures.sum();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public long getCompressionSavedBytes() {
+        return compressionSavedBytes.sum();
+    }
+
+    @Override
+    public long getExecutorActiveThreads() {
+        return executorActiveThreads.getAsLong();
+    }
+
+    @Override
+    public long getExecutorQueuedTasks() {
+        return executorQueuedTasks.getAsLong();
+    }
+
+    @Override
+    public void resetFanOutLatency() {
+        fanOutLatency.reset();
+    }
+
+    void appendText(StringBuilder out) {
+        appendLine(out, "active_connections", getActiveConnections());
+        appendLine(out, "messages_in_total", getMessagesIn());
+        appendLine(out, "messages_out_total", getMessagesOut());
+        appendLine(out, "messages_in_per_second", getMessagesInPerSecond());
+        appendLine(out, "messages_out_per_second", getMessagesOutPerSecond());
+        appendLine(out, "outbound_queue_depth", getOutboundQueueDepth());
+        appendLine(out, "callback_failures_total", getCallbackFailures());
+        appendLine(out, "bytes_in_total", getBytesIn());
+        appendLine(out, "bytes_out_total", getBytesOut());
+        appendLine(out, "compression_saved_bytes_total", getCompressionSavedBytes());
+        appendLine(out, "executor_active_threads", getExecutorActiveThreads());
+        appendLine(out, "executor_queued_tasks", getExecutorQueuedTasks());
+        appendLine(out, "fanout_latency_count", getFanOutCount());
+        for (double quantile : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            out.append(name).append("_fanout_latency_seconds{quantile=\"").append(quantile).append("\"} ")
+                    .append(fanOutLatency.getValueAtPercentile(quantile * 100) / 1e9).append('\n');
+        }
+        appendLine(out, "fanout_latency_max_seconds", fanOutLatency.getMax() / 1e9);
+    }
+
+    private void appendLine(StringBuilder out, String metric, Object value) {
+        out.append(name).append('_').append(metric).append(' ').append(value).append('\n');
+    }
+}
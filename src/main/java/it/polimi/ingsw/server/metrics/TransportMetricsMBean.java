@@ -0,0 +1,37 @@
+package it.polimi.ingsw.server.metrics;
+
+public interface TransportMetricsMBean {
+    long getActiveConnections();
+
+    long getMessagesIn();
+
+    long getMessagesOut();
+
+    double getMessagesInPerSecond();
+
+    double getMessagesOutPerSecond();
+
+    long getFanOutCount();
+
+    double getFanOutP50Millis();
+
+    double getFanOutP99Millis();
+
+    double getFanOutMaxMillis();
+
+    long getOutboundQueueDepth();
+
+    long getCallbackFailures();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    long getCompressionSavedBytes();
+
+    long getExecutorActiveThreads();
+
+    long getExecutorQueuedTasks();
+
+    void resetFanOutLatency();
+}
@@ -0,0 +1,147 @@
+package it.polimi.ingsw.server.rmi;
+
+import java.net.MalformedURLException;
+import java.rmi.Naming;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Client-side RemoteService that never blocks its caller. Every call runs on one I/O thread, so calls
+// reach the server in the order they were made, and completes its future there; UI code continues with
+// whenCompleteAsync(..., Platform::runLater). Failures arrive as the RemoteException, or the
+// IllegalStateException/IllegalArgumentException the server refused the call with; see cause().
+final class AsyncRemoteService implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(AsyncRemoteService.class.getName());
+
+    private final ExecutorService io = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().daemon().name("rmi-client-io").factory());
+    private final RmiSocketConfig socketConfig;
+    // Written on the I/O thread only; volatile for isConnected.
+    private volatile RemoteService service;
+    private ProxyClient callback;
+    private ProxyClient stub;
+
+    AsyncRemoteService(RmiSocketConfig socketConfig) {
+        this.socketConfig = socketConfig;
+    }
+
+    boolean isConnected() {
+        return service != null;
+    }
+
+    // Exports the callback, looks the service up and registers; nothing is left exported on failure.
+    CompletableFuture<Void> connect(String registryUrl, ProxyClient callback, int callbackPort) {
+        return CompletableFuture.runAsync(() -> {
+            if (service != null) {
+                throw new IllegalStateException("Already connected");
+            }
+            try {
+                ProxyClient exported = (ProxyClient) socketConfig.export(callback, callbackPort);
+                try {
+                    RemoteService found = (RemoteService) Naming.lookup(registryUrl);
+                    found.registerClient(exported);
+                    this.callback = callback;
+                    this.stub = exported;
+                    this.service = found;
+                } catch (RemoteException | NotBoundException | MalformedURLException | RuntimeException e) {
+                    UnicastRemoteObject.unexportObject(callback, true);
+                    throw e;
+                }
+            } catch (RemoteException | NotBoundException | MalformedURLException e) {
+                throw new CompletionException(e);
+            }
+        }, io);
+    }
+
+    CompletableFuture<String> sendMessage(String message) {
+        return call(service -> service.sendMessage(message));
+    }
+
+    CompletableFuture<Void> broadcast(String message) {
+        return run(service -> service.broadcastMessage(message));
+    }
+
+    CompletableFuture<Void> joinRoom(String room) {
+        return run(service -> service.joinRoom(room, stub));
+    }
+
+    CompletableFuture<Void> leaveRoom(String room) {
+        return run(service -> service.leaveRoom(room, stub));
+    }
+
+    CompletableFuture<Void> publish(String room, String message) {
+        return run(service -> service.publish(room, message, stub));
+    }
+
+    // Unregisters if it still can and always unexports the callback; never completes exceptionally.
+    CompletableFuture<Void> disconnect() {
+        return CompletableFuture.runAsync(() -> {
+            if (service != null && stub != null) {
+                try {
+                    service.removeClient(stub);
+                } catch (RemoteException e) {
+                    LOGGER.warning("Error unregistering client: " + e.getMessage());
+                }
+            }
+            if (callback != null) {
+                try {
+                    UnicastRemoteObject.unexportObject(callback, true);
+                } catch (RemoteException e) {
+                    LOGGER.log(Level.WARNING, "Error during client unexport", e);
+                }
+            }
+            service = null;
+            callback = null;
+            stub = null;
+        }, io);
+    }
+
+    // Lets calls already queued finish; use disconnect first to leave the server cleanly.
+    @Override
+    public void close() {
+        io.shutdown();
+    }
+
+    // The exception a call failed with, without the CompletionException around it.
+    static Throwable cause(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private <T> CompletableFuture<T> call(RemoteCall<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            RemoteService current = service;
+            if (current == null) {
+                throw new IllegalStateException("Not connected");
+            }
+            try {
+                return call.invoke(current);
+            } catch (RemoteException e) {
+                throw new CompletionException(e);
+            }
+        }, io);
+    }
+
+    private CompletableFuture<Void> run(RemoteRun run) {
+        return call(service -> {
+            run.invoke(service);
+            return null;
+        });
+    }
+
+    @FunctionalInterface
+    private interface RemoteCall<T> {
+        T invoke(RemoteService service) throws RemoteException;
+    }
+
+    @FunctionalInterface
+    private interface RemoteRun {
+        void invoke(RemoteService service) throws RemoteException;
+    }
+}
@@ -0,0 +1,128 @@
+package it.polimi.ingsw.server.rmi;
+
+import it.polimi.ingsw.server.metrics.TransportMetrics;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs client callbacks concurrently, one virtual thread per call, while keeping them in order per client.
+class CallbackDispatcher {
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    interface Callback {
+        void invoke(ProxyClient client) throws RemoteException;
+    }
+
+    // Failures are only reported for callbacks that ran, so the client itself was slow or unreachable;
+    // a call that never got to start is not held against it.
+    interface OutcomeListener {
+        void onSuccess(ProxyClient client);
+
+        void onFailure(ProxyClient client, Throwable error);
+    }
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<ProxyClient, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final long callbackTimeoutMillis;
+    private final OutcomeListener listener;
+    private final TransportMetrics metrics;
+
+    CallbackDispatcher(long callbackTimeoutMillis, OutcomeListener listener, TransportMetrics metrics) {
+        this.callbackTimeoutMillis = callbackTimeoutMillis;
+        this.listener = listener;
+        this.metrics = metrics;
+    }
+
+    // Returns once every call is queued; the future completes when all of them have finished or timed out.
+    CompletableFuture<Void> fanOut(Iterable<ProxyClient> targets, ProxyClient exclude, Callback callback) {
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+        for (ProxyClient client : targets) {
+            if (!client.equals(exclude)) {
+                calls.add(dispatch(client, callback));
+            }
+        }
+        return CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((_, _) -> metrics.fanOutLatency().record(System.nanoTime() - start));
+    }
+
+    CompletableFuture<Void> dispatch(ProxyClient client, Callback callback) {
+        CompletableFuture<Void> outcome = new CompletableFuture<>();
+        AtomicBoolean started = new AtomicBoolean();
+        inFlight.incrementAndGet();
+        // The chain moves on when the previous call's thread has returned, not when it timed out, so calls to
+        // one client never overlap or overtake each other.
+        tails.compute(client, (_, tail) -> (tail == null ? DONE : tail)
+                .thenCompose(_ -> start(client, callback, outcome, started)));
+        return outcome.handle((_, error) -> {
+            if (error == null) {
+                listener.onSuccess(client);
+            } else if (started.get()) {
+                listener.onFailure(client, error instanceof CompletionException ? error.getCause() : error);
+            }
+            inFlight.decrementAndGet();
+            return null;
+        });
+    }
+
+    // Returns a future that completes once the call's thread is done with it. The timeout starts when the call
+    // does, not when it is queued: waiting behind earlier callbacks says nothing about this client. On timeout
+    // the outcome is reported at once and the thread interrupted; a call stuck in the transport still holds
+    // the chain until the RMI response timeout gives up on it.
+    private CompletableFuture<Void> start(ProxyClient client, Callback callback, CompletableFuture<Void> outcome,
+                                          AtomicBoolean started) {
+        CompletableFuture<Void> returned = new CompletableFuture<>();
+        Future<?> call;
+        try {
+            call = executor.submit(() -> {
+                started.set(true);
+                try {
+                    callback.invoke(client);
+                    outcome.complete(null);
+                } catch (Throwable e) {
+                    outcome.completeExceptionally(e);
+                } finally {
+                    returned.complete(null);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shut down: the call never started, so nothing is held against the client.
+            outcome.completeExceptionally(e);
+            returned.complete(null);
+            return returned;
+        }
+        outcome.orTimeout(callbackTimeoutMillis, TimeUnit.MILLISECONDS).whenComplete((_, error) -> {
+            if (error instanceof TimeoutException) {
+                call.cancel(true);
+            }
+        });
+        return returned;
+    }
+
+    void forget(ProxyClient client) {
+        tails.remove(client);
+    }
+
+    int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
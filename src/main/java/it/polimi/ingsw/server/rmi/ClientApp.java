@@ -1,20 +1,21 @@
 package it.polimi.ingsw.server.rmi;
 
 
+import it.polimi.ingsw.server.ui.MessageListView;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
-import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
-import java.rmi.Naming;
 import java.rmi.RemoteException;
-import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,20 +25,18 @@ public class ClientApp extends Application implements ProxyClient {
     private static final String SERVER_HOST = "localhost"; // or the IP of the server
     private static final int RMI_PORT = 1099;
     private static final String SERVICE_NAME = "GalaxyTruckerService";
+    // Callbacks are exported with this client's own socket options, and on a fixed port when set.
+    private static final int CALLBACK_PORT = Integer.getInteger("rmi.callbackPort", 0);
 
-    private RemoteService serverService;
-    private TextArea outputArea;
-    private ProxyClient clientStub;
+    private final AsyncRemoteService remote = new AsyncRemoteService(RmiSocketConfig.fromSystemProperties());
+    private final MessageListView messageView = new MessageListView();
 
     @Override
     public void start(Stage primaryStage) {
         primaryStage.setTitle("JavaFX RMI Client");
         BorderPane root = new BorderPane();
         root.setPadding(new Insets(10));
-        outputArea = new TextArea();
-        outputArea.setEditable(false);
-        outputArea.setWrapText(true);
-        root.setCenter(outputArea);
+        root.setCenter(messageView);
         VBox controls = new VBox(10);
         controls.setPadding(new Insets(10, 0, 0, 0));
         TextField nameField = new TextField("ClientFX");
@@ -55,9 +54,10 @@ public class ClientApp extends Application implements ProxyClient {
         controls.getChildren().addAll(nameField, connectButton, callMethodButton, broadcastField, broadcastButton);
         root.setBottom(controls);
         primaryStage.setOnCloseRequest(_ -> {
-            disconnectFromServer();
+            // Gives the server a moment to hear about it, without holding the window open.
+            remote.disconnect().completeOnTimeout(null, 2, TimeUnit.SECONDS).thenRun(() -> System.exit(0));
+            remote.close();
             Platform.exit();
-            System.exit(0);
         });
         Scene scene = new Scene(root, 450, 400);
         primaryStage.setScene(scene);
@@ -65,81 +65,101 @@ public class ClientApp extends Application implements ProxyClient {
     }
 
     private void connectToServer(String clientName) {
-        if (serverService != null) {
+        if (remote.isConnected()) {
             logOutput("You are already connected.");
             return;
         }
-
-        try {
-            clientStub = (ProxyClient) UnicastRemoteObject.exportObject(this, 0);
-            String registryUrl = "rmi://" + SERVER_HOST + ":" + RMI_PORT + "/" + SERVICE_NAME;
-            logOutput("Attempting to connect to: " + registryUrl);
-            serverService = (RemoteService) Naming.lookup(registryUrl);
-            logOutput("RMI Lookup successful.");
-            serverService.registerClient(clientStub);
-            logOutput("Callback registration sent to the server.");
+        String registryUrl = "rmi://" + SERVER_HOST + ":" + RMI_PORT + "/" + SERVICE_NAME;
+        logOutput("Attempting to connect to: " + registryUrl);
+        setConnectDisabled(true);
+        remote.connect(registryUrl, this, CALLBACK_PORT).whenCompleteAsync((_, error) -> {
+            if (error != null) {
+                Throwable cause = AsyncRemoteService.cause(error);
+                logOutput("RMI connection error: " + cause.getMessage());
+                LOGGER.log(Level.SEVERE, "RMI Lookup/Register Error", cause);
+                setConnectDisabled(false);
+                return;
+            }
             logOutput("Connected to RMI server as " + clientName);
             enableControls(true);
-
-        } catch (Exception e) {
-            logOutput("RMI connection error: " + e.getMessage());
-            LOGGER.log(Level.SEVERE, "RMI Lookup/Register Error", e);
-            disconnectFromServer();
-        }
+        }, Platform::runLater);
     }
 
     private void callRemoteMethod(String clientName) {
-        try {
-            String response = serverService.sendMessage(clientName);
-            logOutput("Response from server: " + response);
-        } catch (RemoteException e) {
-            logOutput("Error during remote call: " + e.getMessage());
-            LOGGER.log(Level.SEVERE, "RMI Call Error", e);
-            handleDisconnection();
-        }
+        remote.sendMessage(clientName).whenCompleteAsync((response, error) -> {
+            if (error == null) {
+                logOutput("Response from server: " + response);
+            } else {
+                handleFailure("Error during remote call", "RMI Call Error", error);
+            }
+        }, Platform::runLater);
     }
 
+    // Returns at once; the outcome is logged when the call completes, in the order calls were made.
     private void sendBroadcast(String message) {
-        if (serverService == null || message == null || message.trim().isEmpty()) {
+        if (!remote.isConnected() || message == null || message.trim().isEmpty()) {
             logOutput("Not connected or empty message.");
             return;
         }
-        try {
-            serverService.broadcastMessage(message);
-            logOutput("Broadcast message sent.");
-        } catch (RemoteException e) {
-            logOutput("Error sending broadcast: " + e.getMessage());
-            LOGGER.log(Level.SEVERE, "RMI Broadcast Error", e);
-            handleDisconnection();
+        CompletableFuture<String> sent = sendRoomCommand(message.strip());
+        if (sent == null) {
+            sent = remote.broadcast(message).thenApply(_ -> "Broadcast message sent.");
+        }
+        sent.whenCompleteAsync((outcome, error) -> {
+            if (error == null) {
+                logOutput(outcome);
+            } else {
+                handleFailure("Error sending broadcast", "RMI Broadcast Error", error);
+            }
+        }, Platform::runLater);
+    }
+
+    // Same room commands as the socket clients: /join <room>, /leave <room>, /msg <room> <text>.
+    // Returns null when the message is not one.
+    private CompletableFuture<String> sendRoomCommand(String message) {
+        String[] parts = message.split(" ", 3);
+        return switch (parts[0]) {
+            case "/join" -> parts.length < 2 ? null
+                    : remote.joinRoom(parts[1]).thenApply(_ -> "Joined room " + parts[1] + ".");
+            case "/leave" -> parts.length < 2 ? null
+                    : remote.leaveRoom(parts[1]).thenApply(_ -> "Left room " + parts[1] + ".");
+            case "/msg" -> parts.length < 3 ? null
+                    : remote.publish(parts[1], parts[2]).thenApply(_ -> "Message sent to room " + parts[1] + ".");
+            default -> null;
+        };
+    }
+
+    // Runs on the FX thread. Refusals by the server (rate limit, load shedding, room misuse) leave the
+    // connection as it is; anything else is taken for a lost server.
+    private void handleFailure(String prefix, String logMessage, Throwable error) {
+        Throwable cause = AsyncRemoteService.cause(error);
+        if (cause instanceof IllegalStateException || cause instanceof IllegalArgumentException) {
+            logOutput("Refused: " + cause.getMessage());
+            return;
         }
+        logOutput(prefix + ": " + cause.getMessage());
+        LOGGER.log(Level.SEVERE, logMessage, cause);
+        handleDisconnection();
     }
 
+    // Called on RMI threads, possibly thousands of times a second; the view adds them once per frame.
     @Override
     public void showMessage(String message) throws RemoteException {
-        logOutput("Message from Server (Callback): " + message);
+        messageView.append("Message from Server (Callback): " + message);
     }
 
-    private void disconnectFromServer() {
-        if (serverService != null && clientStub != null) {
-            try {
-                serverService.removeClient(clientStub);
-            } catch (RemoteException e) {
-                LOGGER.warning("Error unregistering client: " + e.getMessage());
-            }
+    @Override
+    public void showMessages(List<String> messages) throws RemoteException {
+        for (String message : messages) {
+            showMessage(message);
         }
+    }
 
-        if (clientStub != null) {
-            try {
-                UnicastRemoteObject.unexportObject(this, true); // Force unexport
-                logOutput("Client callback unexported.");
-            } catch (Exception e) {
-                LOGGER.log(Level.WARNING, "Error during client unexport", e);
-            }
-        }
-        serverService = null;
-        clientStub = null;
-        enableControls(false);
-        logOutput("Disconnected.");
+    private void disconnectFromServer() {
+        remote.disconnect().thenRunAsync(() -> {
+            enableControls(false);
+            logOutput("Disconnected.");
+        }, Platform::runLater);
     }
 
     private void handleDisconnection() {
@@ -148,16 +168,18 @@ public class ClientApp extends Application implements ProxyClient {
     }
 
     private void logOutput(String message) {
-        if (Platform.isFxApplicationThread()) {
-            outputArea.appendText(message + "\n");
-        } else {
-            Platform.runLater(() -> outputArea.appendText(message + "\n"));
-        }
+        messageView.append(message);
         LOGGER.info(message);
     }
 
+    private void setConnectDisabled(boolean disabled) {
+        BorderPane root = (BorderPane) messageView.getScene().getRoot();
+        VBox controls = (VBox) root.getBottom();
+        controls.getChildren().get(1).setDisable(disabled);
+    }
+
     private void enableControls(boolean enable) {
-        BorderPane root = (BorderPane) outputArea.getScene().getRoot();
+        BorderPane root = (BorderPane) messageView.getScene().getRoot();
         VBox controls = (VBox) root.getBottom();
         controls.getChildren().get(1).setDisable(enable); // Connect Button
         controls.getChildren().get(2).setDisable(!enable); // Call Method Button
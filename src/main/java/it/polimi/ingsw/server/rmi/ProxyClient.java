@@ -1,8 +1,25 @@
 package it.polimi.ingsw.server.rmi;
 
+import it.polimi.ingsw.server.sync.StateUpdate;
+
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 public interface ProxyClient extends Remote {
     void showMessage(String message) throws RemoteException;
+
+    default void showMessages(List<String> messages) throws RemoteException {
+        for (String message : messages) {
+            showMessage(message);
+        }
+    }
+
+    // Updates for the games joined with RemoteService.joinGame; clients that never join one need not care.
+    default void applyState(StateUpdate update) throws RemoteException {
+    }
+
+    // Heartbeat used by the server's liveness sweep; reaching the client is the whole answer.
+    default void ping() throws RemoteException {
+    }
 }
@@ -1,65 +1,426 @@
 package it.polimi.ingsw.server.rmi;
 
+import it.polimi.ingsw.server.admission.AdmissionControl;
+import it.polimi.ingsw.server.admission.TokenBucket;
+import it.polimi.ingsw.server.bus.BusAdapter;
+import it.polimi.ingsw.server.bus.BusMessage;
+import it.polimi.ingsw.server.bus.MessageBus;
+import it.polimi.ingsw.server.codec.ChatMessage;
+import it.polimi.ingsw.server.codec.MessageCodec;
+import it.polimi.ingsw.server.codec.RoomChatMessage;
+import it.polimi.ingsw.server.codec.StateAck;
+import it.polimi.ingsw.server.codec.StateMessage;
+import it.polimi.ingsw.server.history.MessageHistory;
+import it.polimi.ingsw.server.metrics.LatencyHistogram;
+import it.polimi.ingsw.server.metrics.MetricsRegistry;
+import it.polimi.ingsw.server.metrics.TransportMetrics;
+import it.polimi.ingsw.server.room.RoomManager;
+import it.polimi.ingsw.server.room.RoomMember;
+import it.polimi.ingsw.server.sync.GameStateSync;
+import it.polimi.ingsw.server.sync.StateSubscriber;
+import it.polimi.ingsw.server.util.ClientRegistry;
+
+import java.io.Serial;
 import java.rmi.RemoteException;
+import java.rmi.server.RemoteServer;
+import java.rmi.server.ServerNotActiveException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
+// Serializable only through UnicastRemoteObject: once exported, RMI marshals its stub in its place, so the
+// server-side state below is never serialized and need not be.
+@SuppressWarnings("serial")
 public class RMIServer extends UnicastRemoteObject implements RemoteService {
+    @Serial
+    private static final long serialVersionUID = 1L;
     private static final Logger logger = Logger.getLogger(RMIServer.class.getName());
-    private final List<ProxyClient> clients = Collections.synchronizedList(new ArrayList<>());
+    private static final long CALLBACK_TIMEOUT_MILLIS = 2000;
+    private static final int MAX_CONSECUTIVE_FAILURES = 3;
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 5000;
+    private static final long COALESCE_WINDOW_MICROS = 2000;
+    private static final String ORIGIN = "rmi";
+    private static final int REPLAY_ON_REGISTER = Integer.getInteger("history.replay", 50);
+    // Zero exports on any free port; a fixed one is easier to firewall and to watch while tuning.
+    private static final int EXPORT_PORT = Integer.getInteger("rmi.exportPort", 0);
+    private static final RmiSocketConfig SOCKET_CONFIG = RmiSocketConfig.fromSystemProperties();
+    // Buckets kept for callers that are not registered clients; past this the least recently used goes.
+    private static final int MAX_UNREGISTERED_RATE_LIMITS = 1024;
+    private final ClientRegistry<ProxyClient> clients = new ClientRegistry<>();
+    private final Map<ProxyClient, AtomicInteger> consecutiveFailures = new ConcurrentHashMap<>();
+    private final Map<ProxyClient, RoomMember> roomMembers = new ConcurrentHashMap<>();
+    // Calls that name their stub are limited per stub, registered or not; the others per calling host.
+    private final Map<ProxyClient, TokenBucket> clientRateLimits = new ConcurrentHashMap<>();
+    private final Map<Object, TokenBucket> unregisteredRateLimits =
+            Collections.synchronizedMap(new LruMap<>(MAX_UNREGISTERED_RATE_LIMITS));
+    private final AdmissionControl admission = AdmissionControl.global();
+    private final Map<ProxyClient, StateSubscriber> stateSubscribers = new ConcurrentHashMap<>();
+    private final RoomManager rooms;
+    private final GameStateSync states;
+    private final MessageBus bus;
+    private final boolean ownsBus;
+    private final BusAdapter busAdapter = this::deliverFromBus;
+    private final CallbackDispatcher dispatcher;
+    private final ScheduledExecutorService scheduler;
+    private final int maxConsecutiveFailures;
+    private final TransportMetrics metrics = MetricsRegistry.global().transport("rmi");
 
     public RMIServer() throws RemoteException {
-        super();
+        this(CALLBACK_TIMEOUT_MILLIS, MAX_CONSECUTIVE_FAILURES, HEARTBEAT_INTERVAL_MILLIS, COALESCE_WINDOW_MICROS);
+    }
+
+    // Shares rooms and the message bus with the other transports; batching is then the bus's business.
+    public RMIServer(RoomManager rooms, MessageBus bus) throws RemoteException {
+        this(rooms, bus, new GameStateSync());
+    }
+
+    public RMIServer(RoomManager rooms, MessageBus bus, GameStateSync states) throws RemoteException {
+        this(rooms, bus, states, false, CALLBACK_TIMEOUT_MILLIS, MAX_CONSECUTIVE_FAILURES, HEARTBEAT_INTERVAL_MILLIS);
+    }
+
+    // A coalescing window of zero or less sends every broadcast on its own.
+    public RMIServer(long callbackTimeoutMillis, int maxConsecutiveFailures, long heartbeatIntervalMillis,
+                     long coalesceWindowMicros) throws RemoteException {
+        this(new RoomManager(), new MessageBus(coalesceWindowMicros), new GameStateSync(), true,
+                callbackTimeoutMillis, maxConsecutiveFailures, heartbeatIntervalMillis);
+    }
+
+    // A heartbeat interval of zero or less disables the background liveness sweep.
+    public RMIServer(RoomManager rooms, MessageBus bus, long callbackTimeoutMillis, int maxConsecutiveFailures,
+                     long heartbeatIntervalMillis) throws RemoteException {
+        this(rooms, bus, new GameStateSync(), false, callbackTimeoutMillis, maxConsecutiveFailures, heartbeatIntervalMillis);
+    }
+
+    private RMIServer(RoomManager rooms, MessageBus bus, GameStateSync states, boolean ownsBus, long callbackTimeoutMillis,
+                      int maxConsecutiveFailures, long heartbeatIntervalMillis) throws RemoteException {
+        super(EXPORT_PORT, SOCKET_CONFIG.clientSocketFactory(), SOCKET_CONFIG.serverSocketFactory());
+        this.rooms = rooms;
+        this.states = states;
+        this.bus = bus;
+        this.ownsBus = ownsBus;
+        this.dispatcher = new CallbackDispatcher(callbackTimeoutMillis, new CallbackDispatcher.OutcomeListener() {
+            @Override
+            public void onSuccess(ProxyClient client) {
+                resetFailures(client);
+            }
+
+            @Override
+            public void onFailure(ProxyClient client, Throwable error) {
+                recordFailure(client, error);
+            }
+        }, metrics);
+        metrics.setActiveConnectionsGauge(clients::size);
+        metrics.setOutboundQueueDepthGauge(dispatcher::getInFlightCount);
+        admission.registerLoadGauge(ORIGIN, dispatcher::getInFlightCount);
+        this.maxConsecutiveFailures = maxConsecutiveFailures;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("rmi-scheduler").factory());
+        if (heartbeatIntervalMillis > 0) {
+            scheduler.scheduleWithFixedDelay(this::sweepClients, heartbeatIntervalMillis, heartbeatIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        bus.register(busAdapter);
+    }
+
+    // Lets the transport itself give up on a hung callback instead of parking its thread indefinitely. The
+    // property applies to every stub in the JVM, so only the server launchers set it, before exporting.
+    public static void applyResponseTimeout() {
+        if (System.getProperty("sun.rmi.transport.tcp.responseTimeout") == null) {
+            System.setProperty("sun.rmi.transport.tcp.responseTimeout", String.valueOf(CALLBACK_TIMEOUT_MILLIS * 5));
+        }
+    }
+
+    public LatencyHistogram getFanOutLatency() {
+        return metrics.fanOutLatency();
     }
 
     @Override
     public String sendMessage(String message) throws RemoteException {
-        // TODO: to implement in the future with a json
-        // this is the string that will be sent to the client
+        metrics.messageIn();
+        // Game state goes through joinGame/applyState as versioned deltas; this stays a plain echo.
         return "test " + message;
     }
 
     @Override
     public void registerClient(ProxyClient client) throws RemoteException {
-        if (client != null && !clients.contains(client)) {
-            clients.add(client);
-            logger.info("Registered new client.");
-            client.showMessage("You have been registered.");
+        if (client == null || clients.contains(client)) {
+            return;
+        }
+        if (!admission.tryAcquireConnection()) {
+            logger.info("Rejecting client: " + admission.getRejectionMessage());
+            throw new IllegalStateException(admission.getRejectionMessage());
+        }
+        if (!clients.add(client)) {
+            // Registered by a concurrent call.
+            admission.releaseConnection();
+            return;
+        }
+        consecutiveFailures.put(client, new AtomicInteger());
+        logger.info("Registered new client.");
+        dispatcher.dispatch(client, c -> c.showMessage("You have been registered."));
+        // Queued behind the greeting on the client's ordered chain, as a single callback. Callbacks carry no
+        // sequence numbers, so this is all the context an RMI client gets; resuming from a sequence is only
+        // offered to socket sessions.
+        List<String> recent = bus.getHistory().last(REPLAY_ON_REGISTER).stream().map(MessageHistory.Entry::text).toList();
+        if (!recent.isEmpty()) {
+            dispatcher.dispatch(client, c -> c.showMessages(recent));
         }
     }
 
     @Override
     public void broadcastMessage(String message) throws RemoteException {
-        for (ProxyClient client : clients) {
-            try {
-                client.showMessage(message);
-            } catch (RemoteException e) {
-                logger.warning("Error while sending message to the client, it's probably disconnected: " + e.getMessage());
-            }
+        metrics.messageIn();
+        admit(null, 1);
+        bus.publish(BusMessage.text(ORIGIN, null, message));
+    }
+
+    @Override
+    public void broadcastMessages(List<String> messages) throws RemoteException {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        metrics.messagesIn(messages.size());
+        admit(null, messages.size());
+        for (String message : messages) {
+            bus.publish(BusMessage.text(ORIGIN, null, message));
+        }
+    }
+
+    // Runs on the bus thread. A batch nobody here sent goes out as one callback per client; otherwise each
+    // message is fanned out on its own so its sender can be skipped.
+    private void deliverFromBus(List<BusMessage> batch) {
+        boolean fromClient = false;
+        List<String> texts = new ArrayList<>(batch.size());
+        for (BusMessage message : batch) {
+            fromClient |= message.getSender() instanceof ProxyClient;
+            texts.add(message.getText());
+        }
+        if (!fromClient) {
+            fanOutBatch(texts);
+            return;
+        }
+        for (BusMessage message : batch) {
+            ProxyClient sender = message.getSender() instanceof ProxyClient client ? client : null;
+            String text = message.getText();
+            metrics.messagesOut(sender != null && clients.contains(sender) ? clients.size() - 1 : clients.size());
+            dispatcher.fanOut(clients, sender, client -> client.showMessage(text));
+        }
+    }
+
+    private void fanOutBatch(List<String> batch) {
+        metrics.messagesOut((long) batch.size() * clients.size());
+        if (batch.size() == 1) {
+            String message = batch.getFirst();
+            dispatcher.fanOut(clients, null, client -> client.showMessage(message));
+        } else {
+            dispatcher.fanOut(clients, null, client -> client.showMessages(batch));
         }
     }
 
+    // Returns as soon as the message is on the bus; callbacks run concurrently with a per-callback timeout.
     @Override
     public void broadcastMessage(String message, ProxyClient sender) throws RemoteException {
-        for (ProxyClient proxyClient : clients) {
+        if (sender != null) {
+            metrics.messageIn();
+        }
+        admit(sender, 1);
+        bus.publish(BusMessage.text(ORIGIN, sender, message));
+    }
+
+    @Override
+    public void joinRoom(String room, ProxyClient client) throws RemoteException {
+        rooms.join(room, roomMember(client));
+    }
+
+    @Override
+    public void leaveRoom(String room, ProxyClient client) throws RemoteException {
+        RoomMember member = client == null ? null : roomMembers.get(client);
+        if (member != null) {
+            rooms.leave(room, member);
+        }
+    }
+
+    @Override
+    public void publish(String room, String message, ProxyClient sender) throws RemoteException {
+        RoomMember member = sender == null ? null : roomMembers.get(sender);
+        if (member == null || !rooms.isMember(room, member)) {
+            throw new IllegalStateException("Not a member of room " + room);
+        }
+        metrics.messageIn();
+        admit(sender, 1);
+        metrics.messagesOut(rooms.publish(room, "[" + room + "] " + message, member));
+    }
+
+    @Override
+    public void joinGame(String gameId, ProxyClient client) throws RemoteException {
+        states.join(gameId, stateSubscriber(client));
+    }
+
+    @Override
+    public void leaveGame(String gameId, ProxyClient client) throws RemoteException {
+        StateSubscriber subscriber = client == null ? null : stateSubscribers.get(client);
+        if (subscriber != null) {
+            states.leave(gameId, subscriber);
+        }
+    }
+
+    // Not rate limited: a client acknowledges once per tick of every game it follows.
+    @Override
+    public void acknowledgeState(String gameId, long version, ProxyClient client) throws RemoteException {
+        StateSubscriber subscriber = client == null ? null : stateSubscribers.get(client);
+        if (subscriber != null) {
+            states.acknowledge(gameId, subscriber, version);
+        }
+    }
+
+    // Malformed payloads are refused with IllegalArgumentException, like an invalid room name.
+    @Override
+    public void submit(byte[] message, ProxyClient sender) throws RemoteException {
+        if (message == null) {
+            throw new IllegalArgumentException("Empty message");
+        }
+        switch (MessageCodec.forPayload(message, 0, message.length).decode(message)) {
+            case ChatMessage(String text) -> broadcastMessage(text, sender);
+            case RoomChatMessage(String room, String text) -> publish(room, text, sender);
+            case StateAck(String gameId, long version) -> acknowledgeState(gameId, version, sender);
+            case StateMessage _ -> throw new IllegalArgumentException("State updates only come from the server");
+        }
+    }
+
+    // Updates ride the client's ordered callback chain, so they arrive in version order; one that times out
+    // is simply lost, and the next delta is against the last version the client acknowledged.
+    private StateSubscriber stateSubscriber(ProxyClient client) {
+        if (client == null || !clients.contains(client)) {
+            throw new IllegalStateException("Client is not registered");
+        }
+        return stateSubscribers.computeIfAbsent(client,
+                c -> update -> dispatcher.dispatch(c, target -> target.applyState(update)));
+    }
+
+    // Refusals are unchecked exceptions, like room misuse, so the caller does not take them for a lost
+    // connection.
+    private void admit(ProxyClient sender, int messages) {
+        AdmissionControl.Verdict verdict = admission.admit(rateLimit(sender), messages);
+        if (verdict != AdmissionControl.Verdict.ACCEPTED) {
+            throw new IllegalStateException(verdict.getMessage());
+        }
+    }
+
+    private TokenBucket rateLimit(ProxyClient sender) {
+        if (sender != null && clients.contains(sender)) {
+            return clientRateLimits.computeIfAbsent(sender, _ -> new TokenBucket());
+        }
+        Object key = sender;
+        if (key == null) {
             try {
-                if (!proxyClient.equals(sender))
-                    proxyClient.showMessage(message);
-            }
-            catch (RemoteException e) {
-                logger.warning("Error while sending message to the client, it's probably disconnected: " + e.getMessage());
+                key = RemoteServer.getClientHost();
+            } catch (ServerNotActiveException e) {
+                // A call from inside this process rather than through RMI.
+                key = "local";
             }
         }
+        return unregisteredRateLimits.computeIfAbsent(key, _ -> new TokenBucket());
+    }
+
+    // RMI stubs are equal by remote identity, so one member object stands for a client across calls. Room
+    // misuse is reported with unchecked exceptions, which the caller cannot mistake for a transport failure.
+    private RoomMember roomMember(ProxyClient client) {
+        if (client == null || !clients.contains(client)) {
+            throw new IllegalStateException("Client is not registered");
+        }
+        return roomMembers.computeIfAbsent(client,
+                c -> message -> dispatcher.dispatch(c, target -> target.showMessage(message.getText())));
     }
 
     @Override
     public void removeClient(ProxyClient client) throws RemoteException {
-        if (client != null && clients.remove(client)) {
+        if (client != null && dropClient(client)) {
             logger.info("Client disconnected.");
-            broadcastMessage("A client was disconnected.");
+            bus.publish(BusMessage.text(ORIGIN, null, "A client was disconnected."));
+        }
+    }
+
+    private boolean dropClient(ProxyClient client) {
+        if (!clients.remove(client)) {
+            return false;
+        }
+        admission.releaseConnection();
+        consecutiveFailures.remove(client);
+        clientRateLimits.remove(client);
+        RoomMember member = roomMembers.remove(client);
+        if (member != null) {
+            rooms.leaveAll(member);
+        }
+        StateSubscriber subscriber = stateSubscribers.remove(client);
+        if (subscriber != null) {
+            states.leaveAll(subscriber);
+        }
+        dispatcher.forget(client);
+        return true;
+    }
+
+    // One dispatch per client rather than a fan-out: a ping to a hung client waits out the full timeout, which
+    // must not show up in the broadcast latency.
+    private void sweepClients() {
+        for (ProxyClient client : clients) {
+            dispatcher.dispatch(client, ProxyClient::ping);
+        }
+    }
+
+    private void resetFailures(ProxyClient client) {
+        AtomicInteger failures = consecutiveFailures.get(client);
+        if (failures != null) {
+            failures.set(0);
+        }
+    }
+
+    private void recordFailure(ProxyClient client, Throwable error) {
+        metrics.callbackFailure();
+        logger.warning("Error while sending message to the client, it's probably disconnected: " + error);
+        AtomicInteger failures = consecutiveFailures.get(client);
+        if (failures != null && failures.incrementAndGet() >= maxConsecutiveFailures && dropClient(client)) {
+            logger.info("Evicted unresponsive client after " + maxConsecutiveFailures + " consecutive failures.");
+            bus.publish(BusMessage.text(ORIGIN, null, "A client was disconnected."));
+        }
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    public void shutdown() {
+        bus.unregister(busAdapter);
+        admission.unregisterLoadGauge(ORIGIN);
+        if (ownsBus) {
+            bus.shutdown();
+        }
+        scheduler.shutdownNow();
+        dispatcher.shutdown();
+    }
+
+    // Access-ordered, so lookups keep a bucket alive and eviction drops the one idle the longest.
+    private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        LruMap(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxEntries;
         }
     }
-}
\ No newline at end of file
+}
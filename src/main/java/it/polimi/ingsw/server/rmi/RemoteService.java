@@ -2,6 +2,7 @@ package it.polimi.ingsw.server.rmi;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 public interface RemoteService extends Remote {
     void registerClient(ProxyClient client) throws RemoteException;
@@ -9,4 +10,14 @@ public interface RemoteService extends Remote {
     String sendMessage(String clientName) throws RemoteException;
     void broadcastMessage(String message) throws RemoteException;
     void broadcastMessage(String message, ProxyClient sender) throws RemoteException;
+    void broadcastMessages(List<String> messages) throws RemoteException;
+    void joinRoom(String room, ProxyClient client) throws RemoteException;
+    void leaveRoom(String room, ProxyClient client) throws RemoteException;
+    void publish(String room, String message, ProxyClient sender) throws RemoteException;
+    void joinGame(String gameId, ProxyClient client) throws RemoteException;
+    void leaveGame(String gameId, ProxyClient client) throws RemoteException;
+    // The version the client applied, as returned by StateReplica.apply; see GameStateSync.
+    void acknowledgeState(String gameId, long version, ProxyClient client) throws RemoteException;
+    // A structured message encoded with either MessageCodec; routed like the call it stands for.
+    void submit(byte[] message, ProxyClient sender) throws RemoteException;
 }
@@ -0,0 +1,49 @@
+package it.polimi.ingsw.server.rmi;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.Socket;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+
+// Socket options for RMI connections to one exported object. The client half travels inside the stub, so
+// whoever exports an object decides how callers connect to it: the server for calls, each client for its
+// own callbacks. Buffer sizes of zero keep the OS defaults; a compression threshold of zero or less turns
+// deflate off, which is the default: a compressing endpoint only talks to peers built with the same framing.
+public record RmiSocketConfig(boolean tcpNoDelay, int sendBufferSize, int receiveBufferSize,
+                              int compressionThreshold) implements Serializable {
+
+    public static RmiSocketConfig fromSystemProperties() {
+        return new RmiSocketConfig(
+                Boolean.parseBoolean(System.getProperty("rmi.tcpNoDelay", "true")),
+                Integer.getInteger("rmi.sendBufferSize", 0),
+                Integer.getInteger("rmi.receiveBufferSize", 0),
+                Integer.getInteger("rmi.compressionThreshold", 0));
+    }
+
+    public boolean compresses() {
+        return compressionThreshold > 0;
+    }
+
+    public TunedClientSocketFactory clientSocketFactory() {
+        return new TunedClientSocketFactory(this);
+    }
+
+    public TunedServerSocketFactory serverSocketFactory() {
+        return new TunedServerSocketFactory(this);
+    }
+
+    // A port of zero picks any free one. Objects exported with equal configs share a listening port.
+    public Remote export(Remote object, int port) throws RemoteException {
+        return UnicastRemoteObject.exportObject(object, port, clientSocketFactory(), serverSocketFactory());
+    }
+
+    // Options that can only be set once the socket exists; receive buffers are sized before connecting.
+    void configure(Socket socket) throws IOException {
+        socket.setTcpNoDelay(tcpNoDelay);
+        if (sendBufferSize > 0) {
+            socket.setSendBufferSize(sendBufferSize);
+        }
+    }
+}
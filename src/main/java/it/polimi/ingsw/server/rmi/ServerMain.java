@@ -11,6 +11,7 @@ public class ServerMain {
     private static final String SERVICE = "GalaxyTruckerService";
 
     public static void main(String[] args) {
+        RMIServer.applyResponseTimeout();
         try {
             RemoteService serverService = new RMIServer();
             Registry registry = LocateRegistry.createRegistry(RMI_PORT);
@@ -0,0 +1,27 @@
+package it.polimi.ingsw.server.rmi;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.rmi.server.RMIClientSocketFactory;
+
+// A record, so stubs with the same config compare equal and RMI reuses their connections.
+public record TunedClientSocketFactory(RmiSocketConfig config) implements RMIClientSocketFactory, Serializable {
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        TunedSocket socket = new TunedSocket(config);
+        try {
+            if (config.receiveBufferSize() > 0) {
+                socket.setReceiveBufferSize(config.receiveBufferSize());
+            }
+            socket.connect(new InetSocketAddress(host, port));
+            config.configure(socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        return socket;
+    }
+}
@@ -0,0 +1,41 @@
+package it.polimi.ingsw.server.rmi;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.server.RMIServerSocketFactory;
+
+// Must be exported together with a TunedClientSocketFactory of the same config, since both ends have to
+// agree on whether the stream is framed for compression.
+public record TunedServerSocketFactory(RmiSocketConfig config) implements RMIServerSocketFactory {
+
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        ServerSocket serverSocket = new ServerSocket() {
+            @Override
+            public Socket accept() throws IOException {
+                TunedSocket socket = new TunedSocket(config);
+                implAccept(socket);
+                try {
+                    config.configure(socket);
+                } catch (IOException e) {
+                    socket.close();
+                    throw e;
+                }
+                return socket;
+            }
+        };
+        try {
+            // Accepted sockets inherit it, which is the only way to size it before the handshake.
+            if (config.receiveBufferSize() > 0) {
+                serverSocket.setReceiveBufferSize(config.receiveBufferSize());
+            }
+            serverSocket.bind(new InetSocketAddress(port));
+        } catch (IOException e) {
+            serverSocket.close();
+            throw e;
+        }
+        return serverSocket;
+    }
+}
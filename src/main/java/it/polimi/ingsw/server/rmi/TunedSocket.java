@@ -0,0 +1,326 @@
+package it.polimi.ingsw.server.rmi;
+
+import it.polimi.ingsw.server.metrics.MetricsRegistry;
+import it.polimi.ingsw.server.metrics.TransportMetrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// A socket that counts its wire bytes and, when the config compresses, frames the stream so that large
+// writes can be deflated. RMI flushes once per call or return value, so each flush becomes one frame:
+// a flag byte, the wire length and the original length, then the bytes, deflated when the frame reached the
+// threshold and deflating made it smaller. Small calls are passed through with only the 9-byte header.
+// A framed stream opens with MAGIC and a version byte, so a peer that does not frame, such as a plain RMI
+// client whose stream starts with "JRMI", fails with a clear error instead of a malformed frame.
+final class TunedSocket extends Socket {
+
+    private static final int MAGIC = 0x524D495A; // "RMIZ"
+    private static final int PLAIN_RMI_MAGIC = 0x4A524D49; // "JRMI"
+    private static final byte VERSION = 1;
+    private static final int FRAME_HEADER_LENGTH = 9;
+    private static final byte RAW = 0;
+    private static final byte DEFLATED = 1;
+    // Larger writes are split, which also bounds what a peer can make the reader allocate.
+    private static final int MAX_FRAME_LENGTH = 256 * 1024;
+    private static final int STREAM_BUFFER_SIZE = 8192;
+    private static final TransportMetrics METRICS = MetricsRegistry.global().transport("rmi");
+
+    private final RmiSocketConfig config;
+    private InputStream input;
+    private OutputStream output;
+
+    TunedSocket(RmiSocketConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public synchronized InputStream getInputStream() throws IOException {
+        if (input == null) {
+            InputStream counting = new CountingInputStream(super.getInputStream());
+            input = config.compresses() ? new InflatingInputStream(counting) : counting;
+        }
+        return input;
+    }
+
+    @Override
+    public synchronized OutputStream getOutputStream() throws IOException {
+        if (output == null) {
+            OutputStream counting = new CountingOutputStream(super.getOutputStream());
+            output = config.compresses() ? new DeflatingOutputStream(counting, config.compressionThreshold()) : counting;
+        }
+        return output;
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                METRICS.bytesIn(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                METRICS.bytesIn(read);
+            }
+            return read;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            METRICS.bytesOut(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            METRICS.bytesOut(len);
+        }
+    }
+
+    // Buffers everything written until a flush, then sends it as one frame.
+    private static final class DeflatingOutputStream extends OutputStream {
+
+        private final DataOutputStream out;
+        private final int threshold;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        private byte[] deflated = new byte[0];
+        private int length;
+
+        // The preface goes out with the first frame.
+        DeflatingOutputStream(OutputStream out, int threshold) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(out, STREAM_BUFFER_SIZE));
+            this.threshold = threshold;
+            this.out.writeInt(MAGIC);
+            this.out.writeByte(VERSION);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (length == MAX_FRAME_LENGTH) {
+                writeFrame();
+            }
+            ensureCapacity(length + 1);
+            buffer[length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (length == MAX_FRAME_LENGTH) {
+                    writeFrame();
+                }
+                int chunk = Math.min(len, MAX_FRAME_LENGTH - length);
+                ensureCapacity(length + chunk);
+                System.arraycopy(b, off, buffer, length, chunk);
+                length += chunk;
+                off += chunk;
+                len -= chunk;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (length > 0) {
+                writeFrame();
+            }
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                deflater.end();
+                out.close();
+            }
+        }
+
+        private void writeFrame() throws IOException {
+            int wireLength = length >= threshold ? deflate() : length;
+            boolean compressed = wireLength < length;
+            out.writeByte(compressed ? DEFLATED : RAW);
+            out.writeInt(compressed ? wireLength : length);
+            out.writeInt(length);
+            out.write(compressed ? deflated : buffer, 0, compressed ? wireLength : length);
+            if (compressed) {
+                METRICS.compressionSaved(length - wireLength);
+            }
+            length = 0;
+        }
+
+        // Returns the deflated length, or the original length when deflating does not pay off.
+        private int deflate() {
+            if (deflated.length < length) {
+                deflated = new byte[length];
+            }
+            deflater.reset();
+            deflater.setInput(buffer, 0, length);
+            deflater.finish();
+            int deflatedLength = 0;
+            while (!deflater.finished() && deflatedLength < length) {
+                deflatedLength += deflater.deflate(deflated, deflatedLength, length - deflatedLength);
+            }
+            return deflater.finished() ? deflatedLength : length;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.min(MAX_FRAME_LENGTH, Math.max(capacity, buffer.length * 2)));
+            }
+        }
+    }
+
+    private static final class InflatingInputStream extends InputStream {
+
+        private final DataInputStream in;
+        private final Inflater inflater = new Inflater();
+        private byte[] frame = new byte[STREAM_BUFFER_SIZE];
+        private byte[] compressed = new byte[0];
+        private int position;
+        private int length;
+        private boolean prefaceRead;
+
+        InflatingInputStream(InputStream in) {
+            this.in = new DataInputStream(new BufferedInputStream(in, STREAM_BUFFER_SIZE));
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == length && !nextFrame()) {
+                return -1;
+            }
+            return frame[position++] & 0xFF;
+        }
+
+        // Returns what is left of the current frame without waiting for the next one, and so blocks only when
+        // nothing of it is left, as RMI expects of a socket stream.
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position == length && !nextFrame()) {
+                return -1;
+            }
+            int chunk = Math.min(len, length - position);
+            System.arraycopy(frame, position, b, off, chunk);
+            position += chunk;
+            return chunk;
+        }
+
+        @Override
+        public int available() {
+            return length - position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                in.close();
+            } finally {
+                inflater.end();
+            }
+        }
+
+        // Returns false at a clean end of stream; frames are never empty.
+        private boolean nextFrame() throws IOException {
+            if (!prefaceRead) {
+                readPreface();
+                prefaceRead = true;
+            }
+            int flag = in.read();
+            if (flag < 0) {
+                return false;
+            }
+            int wireLength = in.readInt();
+            int originalLength = in.readInt();
+            if (originalLength <= 0 || originalLength > MAX_FRAME_LENGTH || wireLength <= 0 || wireLength > originalLength
+                    || (flag != RAW && flag != DEFLATED) || (flag == RAW && wireLength != originalLength)) {
+                throw new IOException("Malformed RMI frame");
+            }
+            if (frame.length < originalLength) {
+                frame = new byte[Math.max(originalLength, Math.min(MAX_FRAME_LENGTH, frame.length * 2))];
+            }
+            if (flag == RAW) {
+                in.readFully(frame, 0, originalLength);
+            } else {
+                if (compressed.length < wireLength) {
+                    compressed = new byte[wireLength];
+                }
+                in.readFully(compressed, 0, wireLength);
+                inflate(wireLength, originalLength);
+            }
+            position = 0;
+            length = originalLength;
+            return true;
+        }
+
+        private void readPreface() throws IOException {
+            int magic = in.readInt();
+            if (magic == PLAIN_RMI_MAGIC) {
+                throw new IOException("Peer sent plain RMI to a compressing endpoint; "
+                        + "both sides need the same rmi.compressionThreshold");
+            }
+            if (magic != MAGIC) {
+                throw new IOException("Peer does not speak the compressed RMI framing");
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported RMI framing version " + version);
+            }
+        }
+
+        private void inflate(int wireLength, int originalLength) throws IOException {
+            inflater.reset();
+            inflater.setInput(compressed, 0, wireLength);
+            try {
+                int inflated = 0;
+                while (inflated < originalLength && !inflater.finished()) {
+                    int n = inflater.inflate(frame, inflated, originalLength - inflated);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new EOFException("Truncated RMI frame");
+                    }
+                    inflated += n;
+                }
+                if (inflated != originalLength) {
+                    throw new IOException("Malformed RMI frame");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Malformed RMI frame", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package it.polimi.ingsw.server.room;
+
+import it.polimi.ingsw.server.metrics.TransportMetrics;
+
+// Room commands understood by the text protocol:
+//   /join <room>, /leave <room>, /msg <room> <text>, /rooms
+// Replies go back to the issuing member only; anything else is left to the caller to broadcast as before.
+public final class RoomCommands {
+
+    private RoomCommands() {
+    }
+
+    public static boolean isCommand(String line) {
+        return line.startsWith("/join ") || line.startsWith("/leave ") || line.startsWith("/msg ") || line.equals("/rooms");
+    }
+
+    // Returns false when the line is not a room command.
+    public static boolean handle(RoomManager rooms, RoomMember member, String senderName, String line,
+                                 TransportMetrics metrics) {
+        if (!isCommand(line)) {
+            return false;
+        }
+        int space = line.indexOf(' ');
+        String command = space < 0 ? line : line.substring(0, space);
+        String argument = space < 0 ? "" : line.substring(space + 1).strip();
+        switch (command) {
+            case "/join" -> {
+                if (!RoomManager.isValidRoomName(argument)) {
+                    reply(member, "Invalid room name: " + argument);
+                } else if (rooms.join(argument, member)) {
+                    reply(member, "Joined room " + argument + ".");
+                } else {
+                    reply(member, "Already in room " + argument + ".");
+                }
+            }
+            case "/leave" -> reply(member, rooms.leave(argument, member)
+                    ? "Left room " + argument + "."
+                    : "You are not in room " + argument + ".");
+            case "/msg" -> {
+                int split = argument.indexOf(' ');
+                if (split < 0) {
+                    reply(member, "Usage: /msg <room> <text>");
+                    break;
+                }
+                publish(rooms, member, senderName, argument.substring(0, split), argument.substring(split + 1), metrics);
+            }
+            default -> reply(member, "Rooms: " + String.join(", ", rooms.roomsOf(member)));
+        }
+        return true;
+    }
+
+    // Also used for structured room messages, so they read the same as /msg.
+    public static void publish(RoomManager rooms, RoomMember member, String senderName, String room, String text,
+                               TransportMetrics metrics) {
+        if (!rooms.isMember(room, member)) {
+            reply(member, "You are not in room " + room + ".");
+            return;
+        }
+        metrics.messagesOut(rooms.publish(room, "[" + room + "] " + senderName + ": " + text, member));
+    }
+
+    private static void reply(RoomMember member, String text) {
+        member.deliver(RoomMessage.direct(text));
+    }
+}
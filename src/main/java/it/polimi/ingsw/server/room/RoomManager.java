@@ -0,0 +1,157 @@
+package it.polimi.ingsw.server.room;
+
+import it.polimi.ingsw.server.util.ClientRegistry;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Subscription index shared by both transports: room name -> members, plus member -> rooms so a
+// disconnecting client can be removed from everything it joined. Publishing only touches the members of
+// one room, and empty rooms are dropped so the index stays proportional to the live rooms.
+public class RoomManager {
+
+    public static final int MAX_ROOM_NAME_LENGTH = 64;
+
+    private final ConcurrentHashMap<String, ClientRegistry<RoomMember>> rooms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<RoomMember, Set<String>> memberships = new ConcurrentHashMap<>();
+    private volatile Consumer<RoomMessage> forwarder;
+
+    public static boolean isValidRoomName(String room) {
+        if (room == null || room.isEmpty() || room.length() > MAX_ROOM_NAME_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < room.length(); i++) {
+            if (Character.isWhitespace(room.charAt(i)) || Character.isISOControl(room.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Every change to a member's rooms runs inside the compute on its memberships entry, which then updates
+    // the room itself, so the two maps never disagree about a member once a call returns. The lock order is
+    // always memberships then rooms.
+    public boolean join(String room, RoomMember member) {
+        if (!isValidRoomName(room)) {
+            throw new IllegalArgumentException("Invalid room name: " + room);
+        }
+        boolean[] added = new boolean[1];
+        memberships.compute(member, (_, joined) -> {
+            rooms.compute(room, (_, members) -> {
+                ClientRegistry<RoomMember> current = members == null ? new ClientRegistry<>() : members;
+                added[0] = current.add(member);
+                return current;
+            });
+            Set<String> current = joined == null ? ConcurrentHashMap.newKeySet() : joined;
+            current.add(room);
+            return current;
+        });
+        return added[0];
+    }
+
+    public boolean leave(String room, RoomMember member) {
+        boolean[] removed = new boolean[1];
+        memberships.computeIfPresent(member, (_, joined) -> {
+            // Removing and dropping the empty room happen atomically, so a concurrent join never lands in a
+            // room that is no longer indexed.
+            rooms.computeIfPresent(room, (_, members) -> {
+                removed[0] = members.remove(member);
+                return members.isEmpty() ? null : members;
+            });
+            joined.remove(room);
+            return joined.isEmpty() ? null : joined;
+        });
+        return removed[0];
+    }
+
+    public void leaveAll(RoomMember member) {
+        memberships.computeIfPresent(member, (_, joined) -> {
+            for (String room : joined) {
+                rooms.computeIfPresent(room, (_, members) -> {
+                    members.remove(member);
+                    return members.isEmpty() ? null : members;
+                });
+            }
+            return null;
+        });
+    }
+
+    // Moves every room of from over to to. Each room swaps them in one step, so a message published meanwhile
+    // reaches exactly one of the two.
+    public void transfer(RoomMember from, RoomMember to) {
+        Set<String> joined = memberships.remove(from);
+        if (joined == null) {
+            return;
+        }
+        memberships.compute(to, (_, current) -> {
+            Set<String> moved = current == null ? ConcurrentHashMap.newKeySet() : current;
+            for (String room : joined) {
+                rooms.computeIfPresent(room, (_, members) -> {
+                    if (members.replace(from, to)) {
+                        moved.add(room);
+                    }
+                    return members;
+                });
+            }
+            return moved.isEmpty() ? null : moved;
+        });
+    }
+
+    public boolean isMember(String room, RoomMember member) {
+        ClientRegistry<RoomMember> members = rooms.get(room);
+        return members != null && members.contains(member);
+    }
+
+    // Called with every message published here, so it can be sent on to other nodes; must only enqueue.
+    public void setForwarder(Consumer<RoomMessage> forwarder) {
+        this.forwarder = forwarder;
+    }
+
+    // Returns the number of local members the message was delivered to; the sender does not get its own
+    // message.
+    public int publish(String room, String text, RoomMember sender) {
+        RoomMessage message = new RoomMessage(room, text);
+        int recipients = deliver(message, sender);
+        Consumer<RoomMessage> current = forwarder;
+        if (current != null) {
+            current.accept(message);
+        }
+        return recipients;
+    }
+
+    // Delivers a message that was published on another node. It is not forwarded again.
+    public int publishLocal(String room, String text) {
+        return deliver(new RoomMessage(room, text), null);
+    }
+
+    private int deliver(RoomMessage message, RoomMember sender) {
+        ClientRegistry<RoomMember> members = rooms.get(message.getRoom());
+        if (members == null) {
+            return 0;
+        }
+        int recipients = 0;
+        for (RoomMember member : members) {
+            if (member != sender) {
+                member.deliver(message);
+                recipients++;
+            }
+        }
+        return recipients;
+    }
+
+    public List<String> roomsOf(RoomMember member) {
+        Set<String> joined = memberships.get(member);
+        return joined == null ? List.of() : List.copyOf(joined);
+    }
+
+    public int getMemberCount(String room) {
+        ClientRegistry<RoomMember> members = rooms.get(room);
+        return members == null ? 0 : members.size();
+    }
+
+    public int getRoomCount() {
+        return rooms.size();
+    }
+}
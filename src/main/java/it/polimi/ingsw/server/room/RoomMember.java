@@ -0,0 +1,8 @@
+package it.polimi.ingsw.server.room;
+
+// Anything that can sit in a room: a socket connection or an RMI client.
+public interface RoomMember {
+
+    // Called on the publisher's thread, so implementations only queue the message for their own transport.
+    void deliver(RoomMessage message);
+}
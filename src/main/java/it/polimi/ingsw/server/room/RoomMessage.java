@@ -0,0 +1,45 @@
+package it.polimi.ingsw.server.room;
+
+import java.util.function.Function;
+
+// One published message, shared by every member it is delivered to. A transport can cache its wire form
+// here so the message is encoded once per publish rather than once per recipient.
+public final class RoomMessage {
+
+    private record Encoded(Function<RoomMessage, ?> encoder, Object value) {
+    }
+
+    private final String room;
+    private final String text;
+    private volatile Encoded encoded;
+
+    public RoomMessage(String room, String text) {
+        this.room = room;
+        this.text = text;
+    }
+
+    // A message meant for a single member, such as a command reply, which belongs to no room.
+    public static RoomMessage direct(String text) {
+        return new RoomMessage(null, text);
+    }
+
+    public String getRoom() {
+        return room;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    // The encoder must be a constant: its identity is the cache key.
+    @SuppressWarnings("unchecked")
+    public <T> T encoded(Function<RoomMessage, T> encoder) {
+        Encoded current = encoded;
+        if (current != null && current.encoder() == encoder) {
+            return (T) current.value();
+        }
+        T value = encoder.apply(this);
+        encoded = new Encoded(encoder, value);
+        return value;
+    }
+}
@@ -1,5 +1,6 @@
 package it.polimi.ingsw.server.socket;
 
+import it.polimi.ingsw.server.ui.MessageListView;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
@@ -9,29 +10,49 @@ import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.stage.Stage;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class ClientApplication extends Application {
 
     private static final String DEFAULT_SERVER_ADDRESS = "localhost";
     private static final int SERVER_PORT = 12345;
+    private static final long INITIAL_RECONNECT_DELAY_MILLIS = 250;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 10_000;
 
-    private TextArea messageArea;
+    private final MessageListView messageView = new MessageListView();
     private TextField inputField;
     private Button sendButton;
     private Button connectButton;
     private TextField serverAddressField;
     private TextField portField;
+    private CheckBox binaryCheckBox;
 
     private Socket socket;
     private PrintWriter out;
-    private BufferedReader in;
+    private DataOutputStream frameOut;
+    private InputStream in;
     private volatile boolean connected = false;
+    private volatile boolean negotiating = false;
+    private volatile boolean binaryMode = false;
+    // Set by the user's disconnect; stops reconnecting.
+    private volatile boolean closing = false;
+    private volatile boolean awaitingSession = false;
+    private volatile String sessionToken;
+    private volatile long lastSequence;
+    private volatile Thread connectionThread;
 
     @Override
     public void start(Stage primaryStage) {
@@ -44,13 +65,11 @@ public class ClientApplication extends Application {
         portField.setPrefWidth(60);
         connectButton = new Button("Connect");
         connectButton.setOnAction(_ -> toggleConnection());
-        HBox connectionBox = new HBox(5, new Label("Server:"), serverAddressField, new Label("Port:"), portField, connectButton);
+        binaryCheckBox = new CheckBox("Binary");
+        HBox connectionBox = new HBox(5, new Label("Server:"), serverAddressField, new Label("Port:"), portField, binaryCheckBox, connectButton);
         root.setTop(connectionBox);
 
-        messageArea = new TextArea();
-        messageArea.setEditable(false);
-        messageArea.setWrapText(true);
-        root.setCenter(messageArea);
+        root.setCenter(messageView);
 
         inputField = new TextField();
         inputField.setPromptText("Enter message...");
@@ -70,7 +89,8 @@ public class ClientApplication extends Application {
     }
 
     private void toggleConnection() {
-        if (connected) {
+        // Also true while waiting to reconnect.
+        if (connectionThread != null) {
             disconnect();
         } else {
             connect();
@@ -87,40 +107,118 @@ public class ClientApplication extends Application {
             return;
         }
 
+        boolean binaryRequested = binaryCheckBox.isSelected();
         log("Attempting to connect to " + serverAddress + ":" + port + "...");
+        closing = false;
+        sessionToken = null;
+        lastSequence = 0;
+        connectButton.setText("Disconnect");
+        serverAddressField.setDisable(true);
+        portField.setDisable(true);
+        binaryCheckBox.setDisable(true);
 
-        new Thread(() -> {
-            try {
-                socket = new Socket(serverAddress, port);
-                out = new PrintWriter(socket.getOutputStream(), true);
-                in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                connected = true;
+        connectionThread = new Thread(() -> runConnection(serverAddress, port, binaryRequested), "client-connection");
+        connectionThread.start();
+    }
 
+    // Connects, then reconnects with exponential backoff whenever an established connection is lost, until
+    // the user disconnects. Every reconnect resumes the session, so only the broadcasts missed in between
+    // are replayed.
+    private void runConnection(String serverAddress, int port, boolean binaryRequested) {
+        long delay = INITIAL_RECONNECT_DELAY_MILLIS;
+        while (!closing) {
+            try {
+                open(serverAddress, port, binaryRequested);
+                delay = INITIAL_RECONNECT_DELAY_MILLIS;
                 Platform.runLater(() -> {
-                    log("Connected successfully.");
-                    connectButton.setText("Disconnect");
                     sendButton.setDisable(false);
                     inputField.setDisable(false);
-                    serverAddressField.setDisable(true);
-                    portField.setDisable(true);
                 });
-
-                startListening();
-
+                listen();
             } catch (UnknownHostException e) {
-                Platform.runLater(() -> log("Error: Unknown host " + serverAddress));
-                resetConnectionState();
+                log("Error: Unknown host " + serverAddress);
+                break;
             } catch (IOException e) {
-                Platform.runLater(() -> log("Error connecting to server: " + e.getMessage()));
-                resetConnectionState();
+                if (closing) {
+                    break;
+                }
+                if (sessionToken == null) {
+                    // Never got as far as a session, so there is nothing to resume.
+                    log("Error connecting to server: " + e.getMessage());
+                    break;
+                }
+                log("Connection lost: " + e.getMessage());
             }
-        }).start();
+            closeConnection();
+            Platform.runLater(() -> {
+                sendButton.setDisable(true);
+                inputField.setDisable(true);
+            });
+            if (closing) {
+                break;
+            }
+            long wait = delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+            log("Reconnecting in " + wait + " ms...");
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                break;
+            }
+            delay = Math.min(delay * 2, MAX_RECONNECT_DELAY_MILLIS);
+        }
+        closeConnection();
+        Platform.runLater(this::resetConnectionState);
+    }
+
+    private void open(String serverAddress, int port, boolean binaryRequested) throws IOException {
+        Socket newSocket = new Socket(serverAddress, port);
+        socket = newSocket;
+        out = new PrintWriter(new OutputStreamWriter(newSocket.getOutputStream(), StandardCharsets.UTF_8), true);
+        frameOut = new DataOutputStream(new BufferedOutputStream(newSocket.getOutputStream()));
+        in = new BufferedInputStream(newSocket.getInputStream());
+        binaryMode = false;
+        negotiating = binaryRequested;
+        awaitingSession = true;
+        // Checked here as well, in case the user disconnected while the socket was opening.
+        if (closing) {
+            throw new IOException("Disconnected");
+        }
+        connected = true;
+        String token = sessionToken;
+        out.println(token == null ? Frame.SESSION_REQUEST : Frame.SESSION_REQUEST + " " + token + " " + lastSequence);
+        if (binaryRequested) {
+            out.println(Frame.BINARY_HANDSHAKE);
+        }
+        log(token == null ? "Connected successfully." : "Reconnected, resuming session...");
     }
 
     private void disconnect() {
         log("Disconnecting...");
-        connected = false;
+        closing = true;
+        // A clean disconnect ends the session instead of leaving it to expire on the server.
+        if (connected && !negotiating && sessionToken != null) {
+            try {
+                if (binaryMode) {
+                    Frame.writeText(frameOut, Frame.SESSION_END);
+                    frameOut.flush();
+                } else {
+                    out.println(Frame.SESSION_END);
+                }
+            } catch (IOException e) {
+                System.err.println("Error ending session: " + e.getMessage());
+            }
+        }
+        closeConnection();
+        Thread thread = connectionThread;
+        if (thread != null) {
+            // Wakes it up if it is waiting to reconnect.
+            thread.interrupt();
+        }
+        log("Disconnected.");
+    }
 
+    private void closeConnection() {
+        connected = false;
         try {
             if (out != null) out.close();
             if (in != null) in.close();
@@ -128,46 +226,113 @@ public class ClientApplication extends Application {
         } catch (IOException e) {
 
             System.err.println("Error closing client resources: " + e.getMessage());
-        } finally {
-
-            Platform.runLater(this::resetConnectionState);
-            log("Disconnected.");
         }
     }
 
     private void resetConnectionState() {
         connected = false;
+        negotiating = false;
+        binaryMode = false;
         socket = null;
         in = null;
         out = null;
+        frameOut = null;
+        connectionThread = null;
         connectButton.setText("Connect");
         sendButton.setDisable(true);
         inputField.setDisable(true);
         serverAddressField.setDisable(false);
         portField.setDisable(false);
+        binaryCheckBox.setDisable(false);
     }
 
-    private void startListening() {
+    // Returns or throws once the connection is gone. Sequenced broadcasts at or below lastSequence were
+    // already shown before a reconnect and are skipped.
+    private void listen() throws IOException {
+        byte[] frameType = new byte[1];
+        DataInputStream frameIn = new DataInputStream(in);
 
-        new Thread(() -> {
-            try {
-                String serverMessage;
-
-                while (connected && (serverMessage = in.readLine()) != null) {
-                    final String msg = serverMessage;
-                    Platform.runLater(() -> log("Server: " + msg));
+        while (!closing) {
+            String serverMessage;
+            long sequence = 0;
+            if (binaryMode) {
+                byte[] payload = Frame.read(frameIn, frameType);
+                if (frameType[0] == Frame.TYPE_SEQUENCED_TEXT && payload.length >= 8) {
+                    sequence = ByteBuffer.wrap(payload).getLong();
+                    serverMessage = new String(payload, 8, payload.length - 8, StandardCharsets.UTF_8);
+                } else if (frameType[0] == Frame.TYPE_TEXT) {
+                    serverMessage = new String(payload, StandardCharsets.UTF_8);
+                } else {
+                    continue;
                 }
-            } catch (IOException e) {
-                if (connected) {
-                    Platform.runLater(() -> log("Connection lost: " + e.getMessage()));
+            } else {
+                serverMessage = Frame.readLine(in);
+                if (serverMessage == null) {
+                    throw new EOFException("Server closed the connection");
                 }
-            } finally {
-
-                if (connected) {
-                    Platform.runLater(this::disconnect);
+                if (Frame.BINARY_ACCEPTED.equals(serverMessage)) {
+                    binaryMode = true;
+                    negotiating = false;
+                    log("Using binary framing.");
+                    continue;
+                }
+                if (serverMessage.startsWith(Frame.REJECTED)) {
+                    // Retried with the usual backoff when there is a session to resume.
+                    throw new IOException(serverMessage.substring(Frame.REJECTED.length()).trim());
+                }
+                if (Frame.LINE_ONLY.equals(serverMessage)) {
+                    negotiating = false;
+                    log("Server only supports line mode.");
+                    continue;
+                }
+                int space = serverMessage.indexOf(' ');
+                if (serverMessage.startsWith(Frame.SEQUENCE_PREFIX) && space > 0) {
+                    try {
+                        sequence = Long.parseLong(serverMessage.substring(Frame.SEQUENCE_PREFIX.length(), space));
+                        serverMessage = serverMessage.substring(space + 1);
+                    } catch (NumberFormatException e) {
+                        sequence = 0;
+                    }
                 }
             }
-        }).start();
+            if (awaitingSession) {
+                if (serverMessage.startsWith(Frame.SESSION_REQUEST + " ")) {
+                    openSession(serverMessage);
+                    continue;
+                }
+                // The server skips its connect replay for clients that open a session, so what comes
+                // before the reply is the welcome and status text. Sequenced entries are left to the
+                // session's own replay.
+                if (sequence == 0) {
+                    log("Server: " + serverMessage);
+                }
+                continue;
+            }
+            if (sequence > 0) {
+                if (sequence <= lastSequence) {
+                    continue;
+                }
+                lastSequence = sequence;
+            }
+            log("Server: " + serverMessage);
+        }
+    }
+
+    private void openSession(String reply) {
+        String[] parts = reply.split(" ");
+        if (parts.length < 3) {
+            return;
+        }
+        String status = parts[2];
+        if (!Frame.SESSION_RESUMED.equals(status)) {
+            // A new session or another server's history: the old sequence means nothing here.
+            lastSequence = 0;
+        }
+        boolean resumed = Frame.SESSION_RESUMED.equals(status);
+        boolean hadSession = sessionToken != null;
+        sessionToken = parts[1];
+        awaitingSession = false;
+        log(resumed ? "Session resumed." : hadSession ? "Session expired, started a new one." : "Session started.");
     }
 
     private void sendMessage() {
@@ -175,21 +340,31 @@ public class ClientApplication extends Application {
             log("Not connected to the server.");
             return;
         }
+        if (negotiating) {
+            log("Still negotiating the protocol with the server, please retry.");
+            return;
+        }
         String message = inputField.getText().trim();
         if (!message.isEmpty()) {
-            out.println(message);
+            if (binaryMode) {
+                try {
+                    Frame.writeText(frameOut, message);
+                    frameOut.flush();
+                } catch (IOException e) {
+                    log("Error sending message: " + e.getMessage());
+                    return;
+                }
+            } else {
+                out.println(message);
+            }
             log("Me: " + message);
             inputField.clear();
         }
     }
 
+    // Any thread: the view batches lines per frame, in the order they were logged.
     private void log(String message) {
-
-        if (Platform.isFxApplicationThread()) {
-            messageArea.appendText(message + "\n");
-        } else {
-            Platform.runLater(() -> messageArea.appendText(message + "\n"));
-        }
+        messageView.append(message);
     }
 
     public static void main(String[] args) {
@@ -1,41 +1,95 @@
 package it.polimi.ingsw.server.socket;
 
+import it.polimi.ingsw.server.admission.AdmissionControl;
+import it.polimi.ingsw.server.admission.TokenBucket;
+import it.polimi.ingsw.server.room.RoomMember;
+import it.polimi.ingsw.server.room.RoomMessage;
+
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class ClientHandler implements Runnable {
+public class ClientHandler implements Runnable, RoomMember {
     private final Socket clientSocket;
     private final ServerApplication server;
-    private PrintWriter out;
+    private OutputStream out;
     private BufferedReader in;
     private final String clientAddress;
+    private final OutboundQueue<OutboundMessage> outbound;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private volatile Thread writerThread;
+    private volatile Thread readerThread;
+    private volatile String sessionToken;
+    // Set before a session handshake queues anything, and never cleared.
+    private volatile boolean sequenced;
+    private final TokenBucket rateLimit = new TokenBucket();
+    // Only touched by the reader: a client is told once per run of refused messages.
+    private AdmissionControl.Verdict lastRefusal;
 
     public ClientHandler(Socket socket, ServerApplication server) {
         this.clientSocket = socket;
         this.server = server;
         this.clientAddress = socket.getInetAddress().toString();
+        this.outbound = server.newOutboundQueue();
     }
 
     public String getClientAddress() {
         return clientAddress;
     }
 
+    TokenBucket getRateLimit() {
+        return rateLimit;
+    }
+
+    String getSessionToken() {
+        return sessionToken;
+    }
+
     @Override
     public void run() {
+        readerThread = Thread.currentThread();
         try {
-            out = new PrintWriter(clientSocket.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
+            out = new BufferedOutputStream(clientSocket.getOutputStream());
+            in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream(), StandardCharsets.UTF_8));
+            writerThread = server.startWriterThread(this::drainOutbound, clientAddress);
 
             server.log("Handler started for " + clientAddress);
-            out.println("Welcome to the Server!");
+            sendMessage("Welcome to the Server!");
+            SessionManager.PendingReplay connectReplay = server.deferConnectReplay(this);
 
             String inputLine;
             while ((inputLine = in.readLine()) != null) {
-                server.log("Received from " + clientAddress + ": " + inputLine);
-                server.broadcastMessage(clientAddress + ": " + inputLine, this);
+                if (Frame.BINARY_HANDSHAKE.equals(inputLine)) {
+                    // The thread-per-client server only speaks the line protocol.
+                    sendMessage(Frame.LINE_ONLY);
+                    continue;
+                }
+                if (inputLine.startsWith(Frame.SESSION_REQUEST)) {
+                    connectReplay.skip();
+                    sequenced = true;
+                    sessionToken = server.handleSessionRequest(this, inputLine);
+                    continue;
+                }
+                connectReplay.send();
+                server.metrics().messageIn();
+                AdmissionControl.Verdict verdict = server.admitMessage(this);
+                if (verdict != AdmissionControl.Verdict.ACCEPTED) {
+                    if (verdict != lastRefusal) {
+                        sendMessage(verdict.getMessage());
+                    }
+                    lastRefusal = verdict;
+                    continue;
+                }
+                lastRefusal = null;
+                server.logReceived(clientAddress, inputLine);
+                if (!server.handleCommand(this, inputLine)) {
+                    server.broadcastMessage(clientAddress + ": " + inputLine, this);
+                }
             }
         } catch (IOException e) {
             if (!clientSocket.isClosed()) {
@@ -48,19 +102,73 @@ public class ClientHandler implements Runnable {
     }
 
     public void sendMessage(String message) {
-        if (out != null && !clientSocket.isClosed()) {
-            out.println(message);
+        send(OutboundMessage.text(message));
+    }
+
+    @Override
+    public void deliver(RoomMessage message) {
+        send(message.encoded(OutboundMessage.FROM_ROOM_MESSAGE));
+    }
+
+    // Never touches the socket: the message is queued and written by this client's writer thread. Only this
+    // client's own reader may wait for room; see OutboundQueue.
+    void send(OutboundMessage message) {
+        if (closed.get()) {
+            return;
         }
+        boolean mayBlock = Thread.currentThread() == readerThread;
+        if (!outbound.offer(message, mayBlock)) {
+            server.log("Outbound queue full for " + clientAddress + (mayBlock ? " after waiting" : "")
+                    + ", disconnecting slow client.");
+            disconnect();
+        }
+    }
+
+    public int getOutboundQueueSize() {
+        return outbound.size();
+    }
+
+    public long getDroppedMessageCount() {
+        return outbound.getDroppedCount();
+    }
+
+    private void drainOutbound() {
+        try {
+            while (!closed.get()) {
+                OutboundMessage message = outbound.take();
+                message.writeLine(out, sequenced);
+                while ((message = outbound.poll()) != null) {
+                    message.writeLine(out, sequenced);
+                }
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            if (!closed.get()) {
+                server.log("Error writing to client " + clientAddress + ": " + e.getMessage());
+            }
+        }
+        disconnect();
     }
 
     public void disconnect() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        Thread writer = writerThread;
+        if (writer != null && writer != Thread.currentThread()) {
+            writer.interrupt();
+        }
+        outbound.clear();
         try {
+            // Socket first: it unblocks a reader or writer that still holds its stream's lock.
+            if (clientSocket != null && !clientSocket.isClosed()) clientSocket.close();
             if (in != null) in.close();
             if (out != null) out.close();
-            if (clientSocket != null && !clientSocket.isClosed()) clientSocket.close();
             server.log("Client disconnected: " + clientAddress);
         } catch (IOException e) {
             server.log("Error closing resources for " + clientAddress + ": " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,166 @@
+package it.polimi.ingsw.server.socket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+class EventLoop implements Runnable {
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_GATHER_SEGMENTS = 64;
+
+    private final NioServerApplication server;
+    private final Selector selector;
+    private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+    private final Queue<NioClientConnection> pendingWrites = new ConcurrentLinkedQueue<>();
+    // One read buffer per loop: connections only keep the bytes of their current, incomplete line.
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private final ByteBuffer[] gatherBuffers = new ByteBuffer[MAX_GATHER_SEGMENTS];
+    private volatile boolean running = true;
+    private Thread thread;
+
+    EventLoop(NioServerApplication server) throws IOException {
+        this.server = server;
+        this.selector = Selector.open();
+    }
+
+    void start(String name) {
+        thread = new Thread(this, name);
+        thread.start();
+    }
+
+    // Scratch array for gathering writes; only valid on this loop's thread.
+    ByteBuffer[] gatherBuffers() {
+        return gatherBuffers;
+    }
+
+    void register(SocketChannel channel) {
+        pendingChannels.add(channel);
+        selector.wakeup();
+    }
+
+    void requestWrite(NioClientConnection connection) {
+        if (Thread.currentThread() == thread) {
+            connection.flush();
+        } else {
+            pendingWrites.add(connection);
+            selector.wakeup();
+        }
+    }
+
+    // Always deferred, even on this loop's thread, since the caller may hold locks that closing needs.
+    void requestClose(NioClientConnection connection) {
+        pendingWrites.add(connection);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+                registerPendingChannels();
+                flushPendingWrites();
+                processSelectedKeys();
+            } catch (IOException e) {
+                if (running) {
+                    server.log("Event loop error: " + e.getMessage());
+                }
+            } catch (RuntimeException e) {
+                // Per-connection failures are handled below; anything reaching here must not end the loop either.
+                server.log("Unexpected event loop error: " + e);
+            }
+        }
+        closeSelector();
+    }
+
+    private void registerPendingChannels() {
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null) {
+            NioClientConnection connection = new NioClientConnection(channel, this, server);
+            try {
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ, connection);
+                connection.attach(key);
+                server.addClient(connection);
+            } catch (IOException e) {
+                server.log("Error registering client " + connection.getClientAddress() + ": " + e.getMessage());
+                connection.disconnect();
+            } catch (RuntimeException e) {
+                failed(connection, e);
+            }
+        }
+    }
+
+    private void flushPendingWrites() {
+        NioClientConnection connection;
+        while ((connection = pendingWrites.poll()) != null) {
+            try {
+                connection.flush();
+            } catch (RuntimeException e) {
+                failed(connection, e);
+            }
+        }
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            NioClientConnection connection = (NioClientConnection) key.attachment();
+            try {
+                if (key.isValid() && key.isReadable()) {
+                    connection.handleRead(readBuffer);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    connection.flush();
+                }
+            } catch (CancelledKeyException e) {
+                connection.disconnect();
+            } catch (RuntimeException e) {
+                failed(connection, e);
+            }
+        }
+    }
+
+    // A bug in one connection's handling costs that connection, not every other one on this loop.
+    private void failed(NioClientConnection connection, RuntimeException e) {
+        server.log("Unexpected error handling client " + connection.getClientAddress() + ", closing connection: " + e);
+        try {
+            connection.disconnect();
+        } catch (RuntimeException again) {
+            server.log("Error closing client " + connection.getClientAddress() + ": " + again);
+        }
+    }
+
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void closeSelector() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof NioClientConnection connection) {
+                connection.disconnect();
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            server.log("Error closing selector: " + e.getMessage());
+        }
+    }
+}
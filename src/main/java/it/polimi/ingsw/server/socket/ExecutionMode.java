@@ -0,0 +1,6 @@
+package it.polimi.ingsw.server.socket;
+
+public enum ExecutionMode {
+    FIXED_POOL,
+    VIRTUAL_THREADS
+}
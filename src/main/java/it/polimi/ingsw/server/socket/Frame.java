@@ -0,0 +1,105 @@
+package it.polimi.ingsw.server.socket;
+
+import it.polimi.ingsw.server.codec.MessageCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+// Wire format shared by both ends of the socket protocol.
+//
+// Every connection starts in line mode: UTF-8 text terminated by '\n'. A client that wants binary framing
+// sends the BINARY_HANDSHAKE line; the server answers with BINARY_ACCEPTED, after which both directions use
+// frames, or with LINE_ONLY if it keeps the connection in line mode. A frame is a 4-byte big-endian payload
+// length, a type byte and the payload. All control lines start with NUL, which no user message does.
+//
+// A client may open a session first, with SESSION_REQUEST alone or followed by " <token> <lastSequence>" to
+// resume one. The server answers "SESSION_REQUEST <token> <status>", where status is one of the SESSION_
+// constants, and from then on broadcasts carry their history sequence: lines start with SEQUENCE_PREFIX,
+// the sequence and a space, and frames use TYPE_SEQUENCED_TEXT with the sequence as the first 8 payload
+// bytes. SESSION_END closes the session instead of leaving it to expire. A client that does not open a
+// session with its first line gets the latest history unsequenced instead, on its first other input or after
+// a short delay.
+//
+// Game state sync needs binary framing: the client sends TYPE_STATE_JOIN or TYPE_STATE_LEAVE with the game
+// id, and TYPE_STATE_ACK with the 8-byte version it applied followed by the game id; the server sends
+// TYPE_STATE frames holding a StateMessage in the binary codec.
+//
+// TYPE_MESSAGE carries a structured message from the client, encoded with either MessageCodec.
+//
+// A server that is full sends a single REJECTED line, followed by a space and the reason, and closes.
+public final class Frame {
+
+    public static final String BINARY_HANDSHAKE = "\u0000BINARY/1";
+    public static final String BINARY_ACCEPTED = "\u0000BINARY/1 OK";
+    public static final String LINE_ONLY = "\u0000LINE";
+    public static final String REJECTED = "\u0000REJECTED";
+
+    public static final String SESSION_REQUEST = "\u0000SESSION/1";
+    public static final String SESSION_END = SESSION_REQUEST + " END";
+    public static final String SESSION_NEW = "NEW";
+    public static final String SESSION_RESUMED = "RESUMED";
+    // The server's sequences are unrelated to the client's, e.g. after a restart.
+    public static final String SESSION_RESET = "RESET";
+    public static final String SEQUENCE_PREFIX = "\u0000#";
+
+    public static final int HEADER_LENGTH = 5;
+    public static final int SEQUENCED_HEADER_LENGTH = HEADER_LENGTH + 8;
+    public static final int MAX_PAYLOAD_LENGTH = 1024 * 1024;
+
+    public static final byte TYPE_TEXT = 1;
+    public static final byte TYPE_SEQUENCED_TEXT = 2;
+    public static final byte TYPE_STATE = 3;
+    public static final byte TYPE_STATE_JOIN = 4;
+    public static final byte TYPE_STATE_LEAVE = 5;
+    public static final byte TYPE_STATE_ACK = 6;
+    public static final byte TYPE_MESSAGE = 7;
+
+    private Frame() {
+    }
+
+    public static void write(DataOutputStream out, byte type, byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.writeByte(type);
+        out.write(payload);
+    }
+
+    public static void writeText(DataOutputStream out, String text) throws IOException {
+        write(out, TYPE_TEXT, MessageCodec.encodeText(text));
+    }
+
+    // Returns the payload; the type byte is stored in typeOut[0].
+    public static byte[] read(DataInputStream in, byte[] typeOut) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_PAYLOAD_LENGTH) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        typeOut[0] = in.readByte();
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+
+    // Reads one '\n'-terminated UTF-8 line straight from the stream, so no bytes past it are buffered away
+    // from a later switch to framing. Returns null at end of stream.
+    public static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                if (line.size() == 0) {
+                    return null;
+                }
+                throw new EOFException("Connection closed in the middle of a line");
+            }
+            line.write(b);
+        }
+        byte[] bytes = line.toByteArray();
+        int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
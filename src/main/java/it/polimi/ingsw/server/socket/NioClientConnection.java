@@ -0,0 +1,323 @@
+package it.polimi.ingsw.server.socket;
+
+import it.polimi.ingsw.server.admission.AdmissionControl;
+import it.polimi.ingsw.server.admission.TokenBucket;
+import it.polimi.ingsw.server.room.RoomMember;
+import it.polimi.ingsw.server.room.RoomMessage;
+import it.polimi.ingsw.server.sync.StateSubscriber;
+import it.polimi.ingsw.server.sync.StateUpdate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NioClientConnection implements RoomMember, StateSubscriber {
+
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final int MAX_PENDING_MESSAGES = 1024;
+    private static final OutboundMessage BINARY_ACCEPTED = OutboundMessage.text(Frame.BINARY_ACCEPTED);
+
+    private final SocketChannel channel;
+    private final EventLoop eventLoop;
+    private final NioServerApplication server;
+    private final String clientAddress;
+    private final byte[] relayPrefix;
+    private final Queue<OutboundMessage> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean writeScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final AtomicBoolean overflowed = new AtomicBoolean(false);
+    private SelectionKey key;
+    private volatile String sessionToken;
+    private volatile SessionManager.PendingReplay connectReplay;
+    // Set before a session handshake queues anything, and never cleared.
+    private volatile boolean sequenced;
+    // The state below is only touched on the owning event loop thread.
+    private boolean binary;
+    private boolean binaryAckPending;
+    private final ArrayDeque<ByteBuffer> segments = new ArrayDeque<>();
+    private final TokenBucket rateLimit = new TokenBucket();
+    private AdmissionControl.Verdict lastRefusal;
+    private byte[] inputBuffer = new byte[256];
+    private int inputLength;
+    private int frameLength;
+
+    NioClientConnection(SocketChannel channel, EventLoop eventLoop, NioServerApplication server) {
+        this.channel = channel;
+        this.eventLoop = eventLoop;
+        this.server = server;
+        this.clientAddress = channel.socket().getInetAddress().toString();
+        this.relayPrefix = (clientAddress + ": ").getBytes(StandardCharsets.UTF_8);
+    }
+
+    public String getClientAddress() {
+        return clientAddress;
+    }
+
+    int getPendingMessageCount() {
+        return pending.get();
+    }
+
+    byte[] getRelayPrefix() {
+        return relayPrefix;
+    }
+
+    String getSessionToken() {
+        return sessionToken;
+    }
+
+    void setConnectReplay(SessionManager.PendingReplay connectReplay) {
+        this.connectReplay = connectReplay;
+    }
+
+    void sendConnectReplay() {
+        SessionManager.PendingReplay pending = connectReplay;
+        if (pending != null) {
+            pending.send();
+        }
+    }
+
+    void skipConnectReplay() {
+        SessionManager.PendingReplay pending = connectReplay;
+        if (pending != null) {
+            pending.skip();
+        }
+    }
+
+    void setSessionToken(String sessionToken) {
+        this.sessionToken = sessionToken;
+    }
+
+    void startSequencing() {
+        sequenced = true;
+    }
+
+    TokenBucket getRateLimit() {
+        return rateLimit;
+    }
+
+    // Tells the client once per run of refused messages.
+    void refused(AdmissionControl.Verdict verdict) {
+        if (verdict != lastRefusal) {
+            sendMessage(verdict.getMessage());
+        }
+        lastRefusal = verdict;
+    }
+
+    void accepted() {
+        lastRefusal = null;
+    }
+
+    void attach(SelectionKey key) {
+        this.key = key;
+    }
+
+    void handleRead(ByteBuffer buffer) {
+        buffer.clear();
+        int read;
+        try {
+            read = channel.read(buffer);
+        } catch (IOException e) {
+            if (!closed.get()) {
+                server.log("Error handling client " + clientAddress + ": " + e.getMessage());
+            }
+            disconnect();
+            return;
+        }
+        if (read < 0) {
+            disconnect();
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining() && !closed.get()) {
+            if (binary) {
+                readFrame(buffer);
+            } else {
+                readLine(buffer);
+            }
+        }
+    }
+
+    private void readLine(ByteBuffer buffer) {
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (b == '\n') {
+                int length = inputLength > 0 && inputBuffer[inputLength - 1] == '\r' ? inputLength - 1 : inputLength;
+                inputLength = 0;
+                String line = new String(inputBuffer, 0, length, StandardCharsets.UTF_8);
+                if (Frame.BINARY_HANDSHAKE.equals(line)) {
+                    switchToBinary();
+                } else {
+                    server.onLine(this, line);
+                }
+                // The rest of the buffer may already be frames, or the connection may have been closed.
+                return;
+            }
+            if (inputLength == MAX_LINE_LENGTH) {
+                server.log("Line too long from " + clientAddress + ", closing connection.");
+                disconnect();
+                return;
+            }
+            ensureInputCapacity(inputLength + 1);
+            inputBuffer[inputLength++] = b;
+        }
+    }
+
+    private void readFrame(ByteBuffer buffer) {
+        if (inputLength < Frame.HEADER_LENGTH) {
+            inputLength += copyInput(buffer, Frame.HEADER_LENGTH - inputLength);
+            if (inputLength < Frame.HEADER_LENGTH) {
+                return;
+            }
+            int payloadLength = ByteBuffer.wrap(inputBuffer, 0, 4).getInt();
+            if (payloadLength < 0 || payloadLength > Frame.MAX_PAYLOAD_LENGTH) {
+                server.log("Invalid frame length " + payloadLength + " from " + clientAddress + ", closing connection.");
+                disconnect();
+                return;
+            }
+            frameLength = Frame.HEADER_LENGTH + payloadLength;
+            ensureInputCapacity(frameLength);
+        }
+        inputLength += copyInput(buffer, frameLength - inputLength);
+        if (inputLength == frameLength) {
+            ByteBuffer payload = ByteBuffer.wrap(inputBuffer, Frame.HEADER_LENGTH, frameLength - Frame.HEADER_LENGTH);
+            inputLength = 0;
+            server.onFrame(this, inputBuffer[4], payload);
+        }
+    }
+
+    private int copyInput(ByteBuffer buffer, int wanted) {
+        int chunk = Math.min(wanted, buffer.remaining());
+        ensureInputCapacity(inputLength + chunk);
+        buffer.get(inputBuffer, inputLength, chunk);
+        return chunk;
+    }
+
+    private void ensureInputCapacity(int capacity) {
+        if (capacity > inputBuffer.length) {
+            inputBuffer = Arrays.copyOf(inputBuffer, Math.max(capacity, inputBuffer.length * 2));
+        }
+    }
+
+    private void switchToBinary() {
+        binary = true;
+        binaryAckPending = true;
+        server.log("Client " + clientAddress + " switched to binary framing.");
+        if (writeScheduled.compareAndSet(false, true)) {
+            flush();
+        }
+    }
+
+    public void sendMessage(String message) {
+        send(OutboundMessage.text(message));
+    }
+
+    @Override
+    public void deliver(RoomMessage message) {
+        send(message.encoded(OutboundMessage.FROM_ROOM_MESSAGE));
+    }
+
+    @Override
+    public void sendState(StateUpdate update) {
+        send(update.encoded(OutboundMessage.FROM_STATE_UPDATE));
+    }
+
+    void send(OutboundMessage message) {
+        if (closed.get() || overflowed.get()) {
+            return;
+        }
+        // Event loops must never block, so a peer that falls this far behind is dropped. Senders may hold
+        // the delivery lock, and closing runs removeClient, which takes the session lock, so the close is
+        // left to the event loop.
+        if (pending.incrementAndGet() > MAX_PENDING_MESSAGES) {
+            if (overflowed.compareAndSet(false, true)) {
+                server.log("Outbound queue full for " + clientAddress + ", disconnecting slow client.");
+                eventLoop.requestClose(this);
+            }
+            return;
+        }
+        outbound.add(message);
+        if (writeScheduled.compareAndSet(false, true)) {
+            eventLoop.requestWrite(this);
+        }
+    }
+
+    // Only ever called on the owning event loop thread. The wire mode is chosen here rather than when a
+    // message is queued, so everything written after the binary acknowledgement is framed.
+    void flush() {
+        if (overflowed.get()) {
+            disconnect();
+            return;
+        }
+        if (closed.get() || key == null || !key.isValid()) {
+            return;
+        }
+        try {
+            ByteBuffer[] gather = eventLoop.gatherBuffers();
+            while (fillSegments(gather.length)) {
+                int count = 0;
+                for (ByteBuffer segment : segments) {
+                    if (count == gather.length) break;
+                    gather[count++] = segment;
+                }
+                channel.write(gather, 0, count);
+                Arrays.fill(gather, 0, count, null);
+                while (!segments.isEmpty() && !segments.peekFirst().hasRemaining()) {
+                    segments.pollFirst();
+                }
+                if (!segments.isEmpty()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            writeScheduled.set(false);
+            // A sender may have enqueued after the last poll but before the flag was cleared.
+            if (!outbound.isEmpty() && writeScheduled.compareAndSet(false, true)) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        } catch (IOException e) {
+            server.log("Error writing to client " + clientAddress + ": " + e.getMessage());
+            disconnect();
+        }
+    }
+
+    // Tops up the pending segments from the queue, returning whether there is anything to write.
+    private boolean fillSegments(int maxSegments) {
+        if (binaryAckPending) {
+            binaryAckPending = false;
+            BINARY_ACCEPTED.appendSegments(segments, false, false);
+        }
+        OutboundMessage message;
+        while (segments.size() + OutboundMessage.MAX_SEGMENTS <= maxSegments && (message = outbound.poll()) != null) {
+            pending.decrementAndGet();
+            message.appendSegments(segments, binary, sequenced);
+        }
+        return !segments.isEmpty();
+    }
+
+    public void disconnect() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (key != null) {
+            key.cancel();
+        }
+        outbound.clear();
+        try {
+            channel.close();
+            server.log("Client disconnected: " + clientAddress);
+        } catch (IOException e) {
+            server.log("Error closing resources for " + clientAddress + ": " + e.getMessage());
+        }
+        server.removeClient(this);
+    }
+}
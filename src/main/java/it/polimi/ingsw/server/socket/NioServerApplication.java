@@ -0,0 +1,415 @@
+package it.polimi.ingsw.server.socket;
+
+import it.polimi.ingsw.server.admission.AdmissionControl;
+import it.polimi.ingsw.server.bus.BusAdapter;
+import it.polimi.ingsw.server.bus.BusMessage;
+import it.polimi.ingsw.server.bus.MessageBus;
+import it.polimi.ingsw.server.codec.ChatMessage;
+import it.polimi.ingsw.server.codec.Message;
+import it.polimi.ingsw.server.codec.MessageCodec;
+import it.polimi.ingsw.server.codec.RoomChatMessage;
+import it.polimi.ingsw.server.codec.StateAck;
+import it.polimi.ingsw.server.codec.StateMessage;
+import it.polimi.ingsw.server.history.HistoryCommand;
+import it.polimi.ingsw.server.logging.EventLog;
+import it.polimi.ingsw.server.metrics.MetricsRegistry;
+import it.polimi.ingsw.server.metrics.TransportMetrics;
+import it.polimi.ingsw.server.room.RoomCommands;
+import it.polimi.ingsw.server.room.RoomManager;
+import it.polimi.ingsw.server.sync.GameStateSync;
+import it.polimi.ingsw.server.util.ClientRegistry;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class NioServerApplication {
+
+    private static final int PORT = ServerApplication.PORT;
+    private static final int ACCEPT_BACKLOG = 1024;
+    private static final String ORIGIN = "socket";
+    private static final int EVENT_LOOPS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final Logger LOGGER = Logger.getLogger(NioServerApplication.class.getName());
+    // Event loops never write log output themselves; per-message events are FINE and can be sampled.
+    private static final EventLog EVENTS = new EventLog(LOGGER);
+    private static final EventLog.Sampler MESSAGE_SAMPLER = new EventLog.Sampler(ServerApplication.MESSAGE_LOG_SAMPLE_RATE);
+    private ServerSocketChannel serverChannel;
+    private Selector acceptSelector;
+    private EventLoop[] eventLoops;
+    private int nextEventLoop;
+    private final ClientRegistry<NioClientConnection> connectedClients = new ClientRegistry<>();
+    private volatile boolean serverRunning = false;
+    private final TransportMetrics metrics = MetricsRegistry.global().transport("socket");
+    private final RoomManager rooms;
+    private final GameStateSync states;
+    private final MessageBus bus;
+    private final boolean ownsBus;
+    private final BusAdapter busAdapter = this::deliverFromBus;
+    private final SessionManager sessions;
+    private final AdmissionControl admission = AdmissionControl.global();
+
+    public NioServerApplication() {
+        this(new RoomManager(), new MessageBus(), new GameStateSync(), true);
+    }
+
+    public NioServerApplication(RoomManager rooms, MessageBus bus) {
+        this(rooms, bus, new GameStateSync(), false);
+    }
+
+    public NioServerApplication(RoomManager rooms, MessageBus bus, GameStateSync states) {
+        this(rooms, bus, states, false);
+    }
+
+    private NioServerApplication(RoomManager rooms, MessageBus bus, GameStateSync states, boolean ownsBus) {
+        this.rooms = rooms;
+        this.states = states;
+        this.bus = bus;
+        this.ownsBus = ownsBus;
+        this.sessions = new SessionManager(rooms, bus.getHistory());
+        metrics.setActiveConnectionsGauge(connectedClients::size);
+        metrics.setOutboundQueueDepthGauge(this::outboundQueueDepth);
+    }
+
+    void log(String message) {
+        EVENTS.log(Level.INFO, message);
+    }
+
+    public void startServer() {
+        log("Starting server on port " + PORT + " with " + EVENT_LOOPS + " event loops...");
+        serverRunning = true;
+        bus.register(busAdapter);
+        admission.registerLoadGauge(ORIGIN, this::outboundQueueDepth);
+        admission.registerLoadGauge("bus", bus::getQueuedCount);
+
+        new Thread(() -> {
+            try {
+                eventLoops = new EventLoop[EVENT_LOOPS];
+                for (int i = 0; i < EVENT_LOOPS; i++) {
+                    eventLoops[i] = new EventLoop(this);
+                    eventLoops[i].start("socket-event-loop-" + i);
+                }
+
+                acceptSelector = Selector.open();
+                serverChannel = ServerSocketChannel.open();
+                serverChannel.configureBlocking(false);
+                serverChannel.bind(new InetSocketAddress(PORT), ACCEPT_BACKLOG);
+                serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+                log("Server started successfully.");
+
+                while (serverRunning && serverChannel.isOpen()) {
+                    acceptSelector.select();
+                    acceptSelector.selectedKeys().clear();
+                    acceptPendingClients();
+                }
+            } catch (IOException e) {
+                if (serverRunning) {
+                    log("Could not start server on port " + PORT + ": " + e.getMessage());
+                } else {
+                    log("Server socket closed.");
+                }
+            } finally {
+                cleanupServerResources();
+            }
+        }, "socket-acceptor").start();
+    }
+
+    private void acceptPendingClients() {
+        while (serverRunning) {
+            SocketChannel clientChannel;
+            try {
+                clientChannel = serverChannel.accept();
+                if (clientChannel == null) {
+                    return;
+                }
+                clientChannel.configureBlocking(false);
+                clientChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } catch (IOException e) {
+                if (serverRunning) {
+                    log("Error accepting client connection: " + e.getMessage());
+                }
+                return;
+            }
+            log("Client connected: " + clientChannel.socket().getInetAddress());
+            eventLoops[nextEventLoop].register(clientChannel);
+            nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+        }
+    }
+
+    public void stopServer() {
+        if (!serverRunning) {
+            return;
+        }
+        log("Stopping server...");
+        serverRunning = false;
+        bus.unregister(busAdapter);
+        admission.unregisterLoadGauge(ORIGIN);
+        sessions.shutdown();
+        if (ownsBus) {
+            admission.unregisterLoadGauge("bus");
+            bus.shutdown();
+        }
+
+        if (acceptSelector != null) {
+            acceptSelector.wakeup();
+        }
+        try {
+            if (serverChannel != null) serverChannel.close();
+            if (acceptSelector != null) acceptSelector.close();
+        } catch (IOException e) {
+            log("Error closing server socket: " + e.getMessage());
+        }
+
+        if (eventLoops != null) {
+            for (EventLoop eventLoop : eventLoops) {
+                if (eventLoop != null) eventLoop.shutdown();
+            }
+        }
+        for (NioClientConnection connection : connectedClients) {
+            connection.disconnect();
+        }
+        connectedClients.clear();
+        log("Server stopped.");
+    }
+
+    // Runs on the connection's event loop once it is registered, so a rejection can be written before the
+    // connection is closed.
+    void addClient(NioClientConnection connection) {
+        if (!admission.tryAcquireConnection()) {
+            log("Rejecting client " + connection.getClientAddress() + ": " + admission.getRejectionMessage());
+            connection.sendMessage(Frame.REJECTED + " " + admission.getRejectionMessage());
+            connection.disconnect();
+            return;
+        }
+        connectedClients.add(connection);
+        log("Handler started for " + connection.getClientAddress());
+        connection.sendMessage("Welcome to the Server!");
+        // Registered first, so a broadcast racing the replay may arrive twice but is never missed.
+        connection.setConnectReplay(sessions.deferConnectReplay(connection::send));
+    }
+
+    void removeClient(NioClientConnection connection) {
+        sessions.detach(connection.getSessionToken(), connection);
+        rooms.leaveAll(connection);
+        states.leaveAll(connection);
+        if (connectedClients.remove(connection)) {
+            admission.releaseConnection();
+            log("Client disconnected: " + connection.getClientAddress());
+        }
+    }
+
+    void onLine(NioClientConnection connection, String inputLine) {
+        if (inputLine.startsWith(Frame.SESSION_REQUEST)) {
+            handleSessionRequest(connection, inputLine);
+            return;
+        }
+        connection.sendConnectReplay();
+        metrics.messageIn();
+        if (!admit(connection)) {
+            return;
+        }
+        EVENTS.log(Level.FINE, MESSAGE_SAMPLER, "received", "client", connection.getClientAddress(), "message", inputLine);
+        if (handleCommand(connection, inputLine)) {
+            connection.accepted();
+            return;
+        }
+        publish(connection, BusMessage.text(ORIGIN, connection, connection.getClientAddress() + ": " + inputLine));
+    }
+
+    // Frames are relayed as bytes: the sender prefix is prepended without decoding the payload, and socket
+    // recipients get those same bytes.
+    void onFrame(NioClientConnection connection, byte type, ByteBuffer payload) {
+        if (type != Frame.TYPE_TEXT || !payload.hasRemaining() || payload.get(payload.position()) != 0) {
+            connection.sendConnectReplay();
+        }
+        if (type == Frame.TYPE_STATE_JOIN || type == Frame.TYPE_STATE_LEAVE || type == Frame.TYPE_STATE_ACK) {
+            onStateFrame(connection, type, payload);
+            return;
+        }
+        if (type == Frame.TYPE_MESSAGE) {
+            onMessageFrame(connection, payload);
+            return;
+        }
+        if (type != Frame.TYPE_TEXT) {
+            log("Ignoring frame of unknown type " + type + " from " + connection.getClientAddress());
+            return;
+        }
+        // Only payloads that start with NUL or '/' are decoded, to check for a session request or a command.
+        byte first = payload.hasRemaining() ? payload.get(payload.position()) : 0;
+        if (first == 0 && payload.hasRemaining()) {
+            String text = StandardCharsets.UTF_8.decode(payload.duplicate()).toString();
+            if (text.startsWith(Frame.SESSION_REQUEST)) {
+                handleSessionRequest(connection, text);
+                return;
+            }
+            connection.sendConnectReplay();
+        }
+        metrics.messageIn();
+        if (!admit(connection)) {
+            return;
+        }
+        EVENTS.log(Level.FINE, MESSAGE_SAMPLER, "received-frame", "client", connection.getClientAddress(), "bytes", payload.remaining());
+        if (first == '/') {
+            String text = StandardCharsets.UTF_8.decode(payload.duplicate()).toString();
+            if (handleCommand(connection, text)) {
+                connection.accepted();
+                return;
+            }
+        }
+        publish(connection, BusMessage.utf8(ORIGIN, connection, OutboundMessage.relayBody(connection.getRelayPrefix(), payload)));
+    }
+
+    // Acknowledgements arrive once per tick per client, so they bypass the message rate limit.
+    private void onStateFrame(NioClientConnection connection, byte type, ByteBuffer payload) {
+        long version = 0;
+        if (type == Frame.TYPE_STATE_ACK) {
+            if (payload.remaining() < 8) {
+                log("Ignoring short state acknowledgement from " + connection.getClientAddress());
+                return;
+            }
+            version = payload.getLong();
+        }
+        String gameId = StandardCharsets.UTF_8.decode(payload).toString();
+        switch (type) {
+            case Frame.TYPE_STATE_JOIN -> states.join(gameId, connection);
+            case Frame.TYPE_STATE_LEAVE -> states.leave(gameId, connection);
+            default -> states.acknowledge(gameId, connection, version);
+        }
+    }
+
+    // Acknowledgements bypass the rate limit, as in onStateFrame.
+    private void onMessageFrame(NioClientConnection connection, ByteBuffer payload) {
+        byte[] bytes = payload.array();
+        int offset = payload.arrayOffset() + payload.position();
+        Message message;
+        try {
+            message = MessageCodec.forPayload(bytes, offset, payload.remaining()).decode(bytes, offset, payload.remaining());
+        } catch (RuntimeException e) {
+            // Well-formed clients never send these; whatever a codec throws, it must not reach the event loop.
+            log("Invalid message from " + connection.getClientAddress() + ", closing connection: " + e);
+            connection.disconnect();
+            return;
+        }
+        if (!(message instanceof StateAck)) {
+            metrics.messageIn();
+            if (!admit(connection)) {
+                return;
+            }
+        }
+        EVENTS.log(Level.FINE, MESSAGE_SAMPLER, "received-message", "client", connection.getClientAddress(), "message", message);
+        switch (message) {
+            case ChatMessage(String text) ->
+                    publish(connection, BusMessage.text(ORIGIN, connection, connection.getClientAddress() + ": " + text));
+            case RoomChatMessage(String room, String text) -> {
+                RoomCommands.publish(rooms, connection, connection.getClientAddress(), room, text, metrics);
+                connection.accepted();
+            }
+            case StateAck(String gameId, long version) -> states.acknowledge(gameId, connection, version);
+            case StateMessage _ -> {
+                // Only the server sends state; a client that does is as broken as one sending garbage.
+                log("Unexpected state message from " + connection.getClientAddress() + ", closing connection.");
+                connection.disconnect();
+            }
+        }
+    }
+
+    // Runs on an event loop, which must not wait for room on the bus; a full bus sheds the message.
+    private void publish(NioClientConnection connection, BusMessage message) {
+        if (bus.tryPublish(message)) {
+            connection.accepted();
+        } else {
+            connection.refused(AdmissionControl.Verdict.SHED);
+        }
+    }
+
+    // Returns false when the message is dropped, for its sender's rate or for server load. An admitted
+    // message only ends a run of refusals once it is handled, since a full bus may still shed it.
+    private boolean admit(NioClientConnection connection) {
+        AdmissionControl.Verdict verdict = admission.admit(connection.getRateLimit(), 1);
+        if (verdict != AdmissionControl.Verdict.ACCEPTED) {
+            connection.refused(verdict);
+            return false;
+        }
+        return true;
+    }
+
+    // Runs on the connection's event loop, like everything else it reads.
+    private void handleSessionRequest(NioClientConnection connection, String line) {
+        connection.skipConnectReplay();
+        connection.startSequencing();
+        String token = sessions.handle(connection, connection.getSessionToken(), line, connection::send);
+        connection.setSessionToken(token);
+        EVENTS.log(Level.FINE, "Session request from " + connection.getClientAddress() + ": " + (token == null ? "ended" : "open"));
+    }
+
+    private boolean handleCommand(NioClientConnection connection, String line) {
+        return HistoryCommand.handle(bus.getHistory(), line, connection::sendMessage)
+                || RoomCommands.handle(rooms, connection, connection.getClientAddress(), line, metrics);
+    }
+
+    public void broadcastMessage(String message, NioClientConnection sender) {
+        EVENTS.log(Level.FINE, MESSAGE_SAMPLER, "broadcast", "message", message);
+        bus.publish(BusMessage.text(ORIGIN, sender, message));
+    }
+
+    // Runs on the bus thread for messages from every transport; sends only queue, so it never blocks.
+    private void deliverFromBus(List<BusMessage> batch) {
+        sessions.deliveryLock().lock();
+        try {
+            for (BusMessage message : batch) {
+                broadcast(message.encoded(OutboundMessage.FROM_BUS_MESSAGE),
+                        message.getSender() instanceof NioClientConnection sender ? sender : null);
+            }
+        } finally {
+            sessions.deliveryLock().unlock();
+        }
+    }
+
+    private void broadcast(OutboundMessage message, NioClientConnection sender) {
+        // The same message object goes to every recipient and is encoded at most once per wire mode.
+        long start = System.nanoTime();
+        int recipients = 0;
+        for (NioClientConnection connection : connectedClients) {
+            if (connection != sender) {
+                connection.send(message);
+                recipients++;
+            }
+        }
+        metrics.messagesOut(recipients);
+        metrics.fanOutLatency().record(System.nanoTime() - start);
+    }
+
+    private long outboundQueueDepth() {
+        long depth = 0;
+        for (NioClientConnection connection : connectedClients) {
+            depth += connection.getPendingMessageCount();
+        }
+        return depth;
+    }
+
+    public int getConnectedClientCount() {
+        return connectedClients.size();
+    }
+
+    private void cleanupServerResources() {
+        stopServer();
+        log("Server resources cleaned up.");
+    }
+
+    public static void main(String[] args) {
+        NioServerApplication application = new NioServerApplication();
+
+        application.startServer();
+
+        application.log("Server process exiting.");
+    }
+}
@@ -0,0 +1,180 @@
+package it.polimi.ingsw.server.socket;
+
+import it.polimi.ingsw.server.bus.BusMessage;
+import it.polimi.ingsw.server.codec.MessageCodec;
+import it.polimi.ingsw.server.room.RoomMessage;
+import it.polimi.ingsw.server.sync.StateUpdate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.function.Function;
+
+// A message as queued for delivery. The body is encoded once, when the message is created, with MessageCodec:
+// plain text for text frames and lines, the binary codec for state frames. It is shared read-only by every
+// recipient: line mode writes it followed by a shared newline, frame mode writes a 5-byte header followed
+// by it. Recipients only ever get their own position/limit over the same bytes.
+// Messages from the bus history also carry their sequence number, which is only written to connections
+// that opened a session: as a "\0#<sequence> " line prefix, or as a sequenced frame.
+//
+// Text from binary or RMI clients may hold line breaks, which line mode must not pass on: they would let a
+// sender forge lines, control lines included, for line-mode readers. The line form has them as spaces, as
+// well as a leading NUL in bus messages, and is only copied when it differs.
+final class OutboundMessage {
+
+    // Below this size the JDK's per-thread temporary direct buffer copy is cheaper than a direct allocation.
+    private static final int DIRECT_THRESHOLD = 512;
+    static final int MAX_SEGMENTS = 3;
+    private static final ByteBuffer NEWLINE = ByteBuffer.allocateDirect(1).put((byte) '\n').flip().asReadOnlyBuffer();
+
+    // Cache key for RoomMessage: a room publish is encoded once for all of its socket members.
+    static final Function<RoomMessage, OutboundMessage> FROM_ROOM_MESSAGE = message -> text(message.getText());
+    // Same for bus messages, reusing the publisher's UTF-8 bytes when it had them.
+    static final Function<BusMessage, OutboundMessage> FROM_BUS_MESSAGE =
+            message -> utf8(message.getUtf8(), message.getSequence());
+
+    // State updates are encoded once per distinct update, however many subscribers share it.
+    static final Function<StateUpdate, OutboundMessage> FROM_STATE_UPDATE =
+            update -> new OutboundMessage(Frame.TYPE_STATE, MessageCodec.BINARY.encode(update.toMessage()), 0);
+
+    private final byte type;
+    private final byte[] body;
+    private final long sequence;
+    private final boolean fromBus;
+    private volatile ByteBuffer bodyBuffer;
+    private volatile byte[] lineBody;
+    private volatile ByteBuffer lineBuffer;
+    private volatile ByteBuffer header;
+    private volatile ByteBuffer sequenceLinePrefix;
+    private volatile ByteBuffer sequenceHeader;
+
+    private OutboundMessage(byte type, byte[] body, long sequence, boolean fromBus) {
+        this.type = type;
+        this.body = body;
+        this.sequence = sequence;
+        this.fromBus = fromBus;
+    }
+
+    private OutboundMessage(byte type, byte[] body, long sequence) {
+        this(type, body, sequence, false);
+    }
+
+    static OutboundMessage text(String message) {
+        return new OutboundMessage(Frame.TYPE_TEXT, MessageCodec.encodeText(message), 0);
+    }
+
+    // A bus message or history entry. The bytes are shared, not copied. A sequence of zero means the message
+    // is not in the history.
+    static OutboundMessage utf8(byte[] body, long sequence) {
+        return new OutboundMessage(Frame.TYPE_TEXT, body, sequence, true);
+    }
+
+    // Prepends the sender prefix to a frame payload without going through a String.
+    static byte[] relayBody(byte[] prefix, ByteBuffer payload) {
+        byte[] body = new byte[prefix.length + payload.remaining()];
+        System.arraycopy(prefix, 0, body, 0, prefix.length);
+        payload.get(body, prefix.length, payload.remaining());
+        return body;
+    }
+
+    // Adds this message's segments for a gathering write, at most MAX_SEGMENTS of them; only the duplicates
+    // are allocated per recipient. Frames other than text have no line form and are skipped in line mode.
+    void appendSegments(ArrayDeque<ByteBuffer> segments, boolean binary, boolean sequenced) {
+        boolean withSequence = sequenced && sequence > 0;
+        if (type != Frame.TYPE_TEXT) {
+            if (binary) {
+                segments.add(header().duplicate());
+                segments.add(bodyBuffer().duplicate());
+            }
+        } else if (binary) {
+            segments.add((withSequence ? sequenceHeader() : header()).duplicate());
+            segments.add(bodyBuffer().duplicate());
+        } else {
+            if (withSequence) {
+                segments.add(sequenceLinePrefix().duplicate());
+            }
+            segments.add(lineBuffer().duplicate());
+            segments.add(NEWLINE.duplicate());
+        }
+    }
+
+    void writeLine(OutputStream out, boolean sequenced) throws IOException {
+        if (sequenced && sequence > 0) {
+            // A dozen bytes into a buffered stream.
+            ByteBuffer prefix = sequenceLinePrefix().duplicate();
+            while (prefix.hasRemaining()) {
+                out.write(prefix.get());
+            }
+        }
+        out.write(lineBody());
+        out.write('\n');
+    }
+
+    private byte[] lineBody() {
+        byte[] line = lineBody;
+        if (line == null) {
+            line = body;
+            for (int i = 0; i < body.length; i++) {
+                byte b = body[i];
+                if (b == '\n' || b == '\r' || (b == 0 && i == 0 && fromBus)) {
+                    if (line == body) {
+                        line = body.clone();
+                    }
+                    line[i] = ' ';
+                }
+            }
+            lineBody = line;
+        }
+        return line;
+    }
+
+    private ByteBuffer lineBuffer() {
+        ByteBuffer buffer = lineBuffer;
+        if (buffer == null) {
+            byte[] line = lineBody();
+            buffer = line == body ? bodyBuffer() : ByteBuffer.wrap(line).asReadOnlyBuffer();
+            lineBuffer = buffer;
+        }
+        return buffer;
+    }
+
+    private ByteBuffer bodyBuffer() {
+        ByteBuffer buffer = bodyBuffer;
+        if (buffer == null) {
+            buffer = body.length >= DIRECT_THRESHOLD
+                    ? ByteBuffer.allocateDirect(body.length).put(body).flip()
+                    : ByteBuffer.wrap(body);
+            bodyBuffer = buffer = buffer.asReadOnlyBuffer();
+        }
+        return buffer;
+    }
+
+    private ByteBuffer sequenceLinePrefix() {
+        ByteBuffer buffer = sequenceLinePrefix;
+        if (buffer == null) {
+            byte[] prefix = (Frame.SEQUENCE_PREFIX + sequence + " ").getBytes(StandardCharsets.UTF_8);
+            sequenceLinePrefix = buffer = ByteBuffer.wrap(prefix).asReadOnlyBuffer();
+        }
+        return buffer;
+    }
+
+    // Length, type and the 8-byte sequence, which counts as part of the payload.
+    private ByteBuffer sequenceHeader() {
+        ByteBuffer buffer = sequenceHeader;
+        if (buffer == null) {
+            sequenceHeader = buffer = ByteBuffer.allocate(Frame.SEQUENCED_HEADER_LENGTH).putInt(8 + body.length)
+                    .put(Frame.TYPE_SEQUENCED_TEXT).putLong(sequence).flip().asReadOnlyBuffer();
+        }
+        return buffer;
+    }
+
+    private ByteBuffer header() {
+        ByteBuffer buffer = header;
+        if (buffer == null) {
+            header = buffer = ByteBuffer.allocate(Frame.HEADER_LENGTH).putInt(body.length).put(type).flip().asReadOnlyBuffer();
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,69 @@
+package it.polimi.ingsw.server.socket;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+class OutboundQueue<T> {
+
+    private final BlockingQueue<T> queue;
+    private final OverflowPolicy policy;
+    private final long blockTimeoutMillis;
+    private final AtomicLong dropped = new AtomicLong();
+
+    OutboundQueue(int capacity, OverflowPolicy policy, long blockTimeoutMillis) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.policy = policy;
+        this.blockTimeoutMillis = blockTimeoutMillis;
+    }
+
+    // Returns false when the consumer is too slow and should be disconnected. Only a caller that may wait
+    // gets BLOCK; anyone else, such as the bus thread fanning out to every client, gets DISCONNECT instead, so
+    // one slow consumer cannot hold up the rest and is still not sent a stream with holes in it.
+    boolean offer(T item, boolean mayBlock) {
+        OverflowPolicy effective = policy == OverflowPolicy.BLOCK && !mayBlock ? OverflowPolicy.DISCONNECT : policy;
+        switch (effective) {
+            case DROP_OLDEST -> {
+                while (!queue.offer(item)) {
+                    if (queue.poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                }
+                return true;
+            }
+            case DISCONNECT -> {
+                return queue.offer(item);
+            }
+            case BLOCK -> {
+                try {
+                    return queue.offer(item, blockTimeoutMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            default -> throw new IllegalStateException("Unknown overflow policy: " + effective);
+        }
+    }
+
+    T take() throws InterruptedException {
+        return queue.take();
+    }
+
+    T poll() {
+        return queue.poll();
+    }
+
+    int size() {
+        return queue.size();
+    }
+
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    void clear() {
+        queue.clear();
+    }
+}
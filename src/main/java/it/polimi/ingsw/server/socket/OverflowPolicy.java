@@ -0,0 +1,9 @@
+package it.polimi.ingsw.server.socket;
+
+public enum OverflowPolicy {
+    DROP_OLDEST,
+    DISCONNECT,
+    // Waits up to the block timeout, then disconnects. Only the client's own reader waits: broadcasts from
+    // other threads disconnect a full client at once, as with DISCONNECT.
+    BLOCK
+}
@@ -1,33 +1,130 @@
 package it.polimi.ingsw.server.socket;
 
+import it.polimi.ingsw.server.admission.AdmissionControl;
+import it.polimi.ingsw.server.bus.BusAdapter;
+import it.polimi.ingsw.server.bus.BusMessage;
+import it.polimi.ingsw.server.bus.MessageBus;
+import it.polimi.ingsw.server.history.HistoryCommand;
+import it.polimi.ingsw.server.logging.EventLog;
+import it.polimi.ingsw.server.metrics.MetricsRegistry;
+import it.polimi.ingsw.server.metrics.TransportMetrics;
+import it.polimi.ingsw.server.room.RoomCommands;
+import it.polimi.ingsw.server.room.RoomManager;
+import it.polimi.ingsw.server.util.ClientRegistry;
+
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class ServerApplication {
 
-    private static final int PORT = 12345;
+    // Overridable so several nodes can run on one host.
+    static final int PORT = Integer.getInteger("socket.port", 12345);
+    private static final String ORIGIN = "socket";
     private static final int MAX_CLIENTS = 4;
+    private static final int DEFAULT_OUTBOUND_CAPACITY = 1024;
+    private static final long DEFAULT_BLOCK_TIMEOUT_MILLIS = 100;
+    // Logs one in every N per-message events once FINE is enabled; shared by both socket servers.
+    static final int MESSAGE_LOG_SAMPLE_RATE = Integer.getInteger("socket.log.sampleRate", 1);
+    // Recent broadcasts sent to a client right after the welcome message; shared by both socket servers.
+    static final int REPLAY_ON_CONNECT = Integer.getInteger("history.replay", 50);
 
     private static final java.util.logging.Logger LOGGER = Logger.getLogger(ServerApplication.class.getName());
+    private static final EventLog EVENTS = new EventLog(LOGGER);
+    private static final EventLog.Sampler MESSAGE_SAMPLER = new EventLog.Sampler(MESSAGE_LOG_SAMPLE_RATE);
     private ServerSocket serverSocket;
     private ExecutorService clientExecutorService;
-    private final List<ClientHandler> connectedClients = new ArrayList<>();
+    private final ExecutionMode executionMode;
+    private final ClientRegistry<ClientHandler> connectedClients = new ClientRegistry<>();
     private volatile boolean serverRunning = false;
+    private volatile int outboundCapacity = DEFAULT_OUTBOUND_CAPACITY;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+    private volatile long blockTimeoutMillis = DEFAULT_BLOCK_TIMEOUT_MILLIS;
+    private final TransportMetrics metrics = MetricsRegistry.global().transport("socket");
+    private final RoomManager rooms;
+    private final MessageBus bus;
+    private final boolean ownsBus;
+    private final BusAdapter busAdapter = this::deliverFromBus;
+    private final SessionManager sessions;
+    private final AdmissionControl admission = AdmissionControl.global();
+
+    public ServerApplication() {
+        this(ExecutionMode.FIXED_POOL);
+    }
+
+    public ServerApplication(ExecutionMode executionMode) {
+        this(executionMode, new RoomManager(), new MessageBus(), true);
+    }
+
+    public ServerApplication(ExecutionMode executionMode, RoomManager rooms, MessageBus bus) {
+        this(executionMode, rooms, bus, false);
+    }
+
+    private ServerApplication(ExecutionMode executionMode, RoomManager rooms, MessageBus bus, boolean ownsBus) {
+        this.executionMode = executionMode;
+        this.rooms = rooms;
+        this.bus = bus;
+        this.ownsBus = ownsBus;
+        this.sessions = new SessionManager(rooms, bus.getHistory());
+        metrics.setActiveConnectionsGauge(connectedClients::size);
+        metrics.setOutboundQueueDepthGauge(this::outboundQueueDepth);
+        // Virtual threads never saturate: every connected client has its own running handler.
+        metrics.setExecutorGauges(
+                () -> clientExecutorService instanceof ThreadPoolExecutor pool ? pool.getActiveCount() : connectedClients.size(),
+                () -> clientExecutorService instanceof ThreadPoolExecutor pool ? pool.getQueue().size() : 0);
+    }
 
     void log(String message) {
-        LOGGER.info(message);
+        EVENTS.log(Level.INFO, message);
+    }
+
+    void logReceived(String clientAddress, String message) {
+        EVENTS.log(Level.FINE, MESSAGE_SAMPLER, "received", "client", clientAddress, "message", message);
+    }
+
+    // Applies to clients that connect after the call.
+    public void setOutboundPolicy(OverflowPolicy policy, int capacity, long blockTimeoutMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Outbound queue capacity must be positive: " + capacity);
+        }
+        this.overflowPolicy = policy;
+        this.outboundCapacity = capacity;
+        this.blockTimeoutMillis = blockTimeoutMillis;
+    }
+
+    TransportMetrics metrics() {
+        return metrics;
+    }
+
+    OutboundQueue<OutboundMessage> newOutboundQueue() {
+        return new OutboundQueue<>(outboundCapacity, overflowPolicy, blockTimeoutMillis);
+    }
+
+    Thread startWriterThread(Runnable writer, String clientAddress) {
+        Thread.Builder builder = executionMode == ExecutionMode.VIRTUAL_THREADS
+                ? Thread.ofVirtual()
+                : Thread.ofPlatform().daemon();
+        return builder.name("writer-" + clientAddress).start(writer);
     }
 
     public void startServer() {
-        log("Starting server on port " + PORT + "...");
-        clientExecutorService = Executors.newFixedThreadPool(MAX_CLIENTS);
+        log("Starting server on port " + PORT + " (" + executionMode + ")...");
+        clientExecutorService = switch (executionMode) {
+            case FIXED_POOL -> Executors.newFixedThreadPool(MAX_CLIENTS);
+            case VIRTUAL_THREADS -> Executors.newVirtualThreadPerTaskExecutor();
+        };
         serverRunning = true;
+        bus.register(busAdapter);
+        admission.registerLoadGauge(ORIGIN, () -> outboundQueueDepth()
+                + (clientExecutorService instanceof ThreadPoolExecutor pool ? pool.getQueue().size() : 0));
+        admission.registerLoadGauge("bus", bus::getQueuedCount);
 
         new Thread(() -> {
             try {
@@ -39,11 +136,12 @@ public class ServerApplication {
 
                         Socket clientSocket = serverSocket.accept();
                         log("Client connected: " + clientSocket.getInetAddress());
+                        if (!admitConnection(clientSocket)) {
+                            continue;
+                        }
 
                         ClientHandler clientHandler = new ClientHandler(clientSocket, this);
-                        synchronized (connectedClients) {
-                            connectedClients.add(clientHandler);
-                        }
+                        connectedClients.add(clientHandler);
                         clientExecutorService.submit(clientHandler);
 
                     } catch (IOException e) {
@@ -65,12 +163,17 @@ public class ServerApplication {
     public void stopServer() {
         log("Stopping server...");
         serverRunning = false;
+        bus.unregister(busAdapter);
+        admission.unregisterLoadGauge(ORIGIN);
+        sessions.shutdown();
+        if (ownsBus) {
+            admission.unregisterLoadGauge("bus");
+            bus.shutdown();
+        }
 
-        synchronized (connectedClients) {
-            for (ClientHandler handler : connectedClients) {
-                handler.disconnect();
-            }
-            connectedClients.clear();
+        for (ClientHandler handler : connectedClients) {
+            handler.disconnect();
+            unregister(handler);
         }
 
         if (clientExecutorService != null && !clientExecutorService.isShutdown()) {
@@ -96,22 +199,99 @@ public class ServerApplication {
         log("Server stopped.");
     }
 
-    protected void removeClient(ClientHandler clientHandler) {
-        synchronized (connectedClients) {
-            connectedClients.remove(clientHandler);
+    // A fixed pool used to queue clients past MAX_CLIENTS without a word; they are now told and closed,
+    // as is anyone past the process-wide cap.
+    private boolean admitConnection(Socket clientSocket) {
+        String refusal = null;
+        if (executionMode == ExecutionMode.FIXED_POOL && connectedClients.size() >= MAX_CLIENTS) {
+            refusal = "Server is full (" + MAX_CLIENTS + " clients), please try again later.";
+        } else if (!admission.tryAcquireConnection()) {
+            refusal = admission.getRejectionMessage();
+        }
+        if (refusal == null) {
+            return true;
+        }
+        log("Rejecting client " + clientSocket.getInetAddress() + ": " + refusal);
+        try (clientSocket) {
+            clientSocket.getOutputStream().write((Frame.REJECTED + " " + refusal + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            log("Error rejecting client " + clientSocket.getInetAddress() + ": " + e.getMessage());
+        }
+        return false;
+    }
+
+    private boolean unregister(ClientHandler clientHandler) {
+        if (!connectedClients.remove(clientHandler)) {
+            return false;
         }
+        admission.releaseConnection();
+        return true;
+    }
+
+    // Anything but ACCEPTED means the line is dropped, for its sender's rate or for server load.
+    AdmissionControl.Verdict admitMessage(ClientHandler handler) {
+        return admission.admit(handler.getRateLimit(), 1);
+    }
+
+    protected void removeClient(ClientHandler clientHandler) {
+        unregister(clientHandler);
+        sessions.detach(clientHandler.getSessionToken(), clientHandler);
+        rooms.leaveAll(clientHandler);
         log("Client disconnected: " + clientHandler.getClientAddress());
     }
 
+    // Returns the token the handler holds afterwards; see SessionManager.
+    String handleSessionRequest(ClientHandler handler, String line) {
+        return sessions.handle(handler, handler.getSessionToken(), line, handler::send);
+    }
+
+    // Returns false when the line is an ordinary message to broadcast.
+    boolean handleCommand(ClientHandler handler, String line) {
+        return HistoryCommand.handle(bus.getHistory(), line, handler::sendMessage)
+                || RoomCommands.handle(rooms, handler, handler.getClientAddress(), line, metrics);
+    }
+
+    // Called once the handler is registered, so a broadcast racing the replay may arrive twice but is
+    // never missed. See SessionManager.deferConnectReplay.
+    SessionManager.PendingReplay deferConnectReplay(ClientHandler handler) {
+        return sessions.deferConnectReplay(handler::send);
+    }
+
     public void broadcastMessage(String message, ClientHandler sender) {
-        log("Broadcasting: " + message);
-        synchronized (connectedClients) {
-            for (ClientHandler handler : connectedClients) {
-                if (handler != sender) {
-                    handler.sendMessage(message);
+        EVENTS.log(Level.FINE, MESSAGE_SAMPLER, "broadcast", "message", message);
+        bus.publish(BusMessage.text(ORIGIN, sender, message));
+    }
+
+    // Runs on the bus thread for messages from every transport. Each message is encoded once and only
+    // enqueued: each handler's writer thread does the socket I/O, so a stalled peer costs the bus nothing
+    // beyond the overflow policy of its own queue.
+    private void deliverFromBus(List<BusMessage> batch) {
+        sessions.deliveryLock().lock();
+        try {
+            for (BusMessage message : batch) {
+                long start = System.nanoTime();
+                int recipients = 0;
+                OutboundMessage encoded = message.encoded(OutboundMessage.FROM_BUS_MESSAGE);
+                for (ClientHandler handler : connectedClients) {
+                    if (handler != message.getSender()) {
+                        handler.send(encoded);
+                        recipients++;
+                    }
                 }
+                metrics.messagesOut(recipients);
+                metrics.fanOutLatency().record(System.nanoTime() - start);
             }
+        } finally {
+            sessions.deliveryLock().unlock();
+        }
+    }
+
+    private long outboundQueueDepth() {
+        long depth = 0;
+        for (ClientHandler handler : connectedClients) {
+            depth += handler.getOutboundQueueSize();
         }
+        return depth;
     }
 
     private void cleanupServerResources() {
@@ -120,7 +300,8 @@ public class ServerApplication {
     }
 
     public static void main(String[] args) {
-        ServerApplication application = new ServerApplication();
+        ExecutionMode mode = args.length > 0 ? ExecutionMode.valueOf(args[0].toUpperCase()) : ExecutionMode.FIXED_POOL;
+        ServerApplication application = new ServerApplication(mode);
 
         application.startServer();
 
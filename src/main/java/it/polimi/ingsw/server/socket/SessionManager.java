@@ -0,0 +1,256 @@
+package it.polimi.ingsw.server.socket;
+
+import it.polimi.ingsw.server.history.MessageHistory;
+import it.polimi.ingsw.server.room.RoomManager;
+import it.polimi.ingsw.server.room.RoomMember;
+import it.polimi.ingsw.server.room.RoomMessage;
+
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Resumable sessions for socket clients. A session outlives its connection by a grace period: the rooms it
+// had joined are held by a placeholder member that buffers room messages, and broadcasts are not buffered
+// per session at all, since the bus history already keeps them by sequence. A client that reconnects with
+// its token and the last sequence it saw gets its rooms back and only the broadcasts it missed.
+final class SessionManager {
+
+    static final long GRACE_MILLIS = Long.getLong("session.graceMillis", 30_000);
+    // Resumes further behind than this get the latest messages and a notice instead of the whole gap.
+    static final int MAX_RESUME_REPLAY = Integer.getInteger("session.maxReplay", 512);
+    // How long a new connection has to open a session before it gets the plain connect replay.
+    static final long CONNECT_REPLAY_DELAY_MILLIS = Long.getLong("session.connectReplayDelayMillis", 250);
+    private static final int MAX_BUFFERED_ROOM_MESSAGES = 256;
+    private static final int TOKEN_BYTES = 16;
+
+    private final RoomManager rooms;
+    private final MessageHistory history;
+    private final SecureRandom random = new SecureRandom();
+    // Both maps are only changed under this object's lock; handshakes and disconnects are rare.
+    private final Map<String, RoomMember> attached = new HashMap<>();
+    private final Map<String, DetachedSession> detached = new HashMap<>();
+    private final ScheduledExecutorService timers = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("session-timers").factory());
+    // Held by the server while it fans out a bus batch and by a handshake while it queues its replay, so a
+    // resumed client gets the replay before any live broadcast that is not part of it. A broadcast may still
+    // arrive twice, which clients skip by sequence.
+    private final ReentrantLock deliveryLock = new ReentrantLock();
+
+    SessionManager(RoomManager rooms, MessageHistory history) {
+        this.rooms = rooms;
+        this.history = history;
+    }
+
+    ReentrantLock deliveryLock() {
+        return deliveryLock;
+    }
+
+    // Handles a SESSION_REQUEST line and returns the token the connection holds afterwards, null once the
+    // session is ended. The connection must already write sequences, so none of the replay goes out
+    // without them.
+    synchronized String handle(RoomMember member, String currentToken, String line, Consumer<OutboundMessage> out) {
+        if (Frame.SESSION_END.equals(line)) {
+            if (currentToken != null) {
+                attached.remove(currentToken, member);
+            }
+            return null;
+        }
+        if (currentToken != null) {
+            // Only the first request on a connection counts.
+            return currentToken;
+        }
+        String[] parts = line.substring(Frame.SESSION_REQUEST.length()).trim().split(" ");
+        if (parts.length == 2) {
+            long lastSequence;
+            try {
+                lastSequence = Long.parseLong(parts[1]);
+            } catch (NumberFormatException e) {
+                lastSequence = -1;
+            }
+            if (lastSequence >= 0) {
+                return resume(member, parts[0], lastSequence, out);
+            }
+        }
+        String token = newToken();
+        attached.put(token, member);
+        deliveryLock.lock();
+        try {
+            out.accept(OutboundMessage.text(Frame.SESSION_REQUEST + " " + token + " " + Frame.SESSION_NEW));
+            replay(history.last(ServerApplication.REPLAY_ON_CONNECT), out);
+        } finally {
+            deliveryLock.unlock();
+        }
+        return token;
+    }
+
+    // The connect replay only goes to connections that do not open a session straight away, since a session
+    // brings its own, sequenced replay. It is sent on the connection's first other input, or once nothing has
+    // come within CONNECT_REPLAY_DELAY_MILLIS, so clients that never send anything still get it.
+    PendingReplay deferConnectReplay(Consumer<OutboundMessage> out) {
+        PendingReplay pending = new PendingReplay(
+                () -> replay(history.last(ServerApplication.REPLAY_ON_CONNECT), out));
+        try {
+            pending.timer = timers.schedule(pending::send, CONNECT_REPLAY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; nobody is left to replay to.
+            pending.skip();
+        }
+        return pending;
+    }
+
+    private String resume(RoomMember member, String token, long lastSequence, Consumer<OutboundMessage> out) {
+        String status = Frame.SESSION_RESUMED;
+        DetachedSession session = detached.remove(token);
+        RoomMember previous = attached.get(token);
+        if (session != null) {
+            session.expiry.cancel(false);
+        } else if (previous == null || previous == member) {
+            status = Frame.SESSION_NEW;
+            token = newToken();
+        }
+        attached.put(token, member);
+
+        long newest = history.getLastSequence();
+        deliveryLock.lock();
+        try {
+            if (lastSequence > newest) {
+                out.accept(OutboundMessage.text(Frame.SESSION_REQUEST + " " + token + " " + Frame.SESSION_RESET));
+                replay(history.last(ServerApplication.REPLAY_ON_CONNECT), out);
+            } else {
+                out.accept(OutboundMessage.text(Frame.SESSION_REQUEST + " " + token + " " + status));
+                boolean withinLimit = newest - lastSequence <= MAX_RESUME_REPLAY;
+                List<MessageHistory.Entry> entries = withinLimit
+                        ? history.since(lastSequence, MAX_RESUME_REPLAY)
+                        : history.last(MAX_RESUME_REPLAY);
+                if (!withinLimit || (!entries.isEmpty() && entries.getFirst().sequence() != lastSequence + 1)) {
+                    out.accept(OutboundMessage.text("Some messages were missed while disconnected."));
+                }
+                replay(entries, out);
+            }
+        } finally {
+            deliveryLock.unlock();
+        }
+        // After the replay, and buffered room messages before live ones: the placeholder hands over what it
+        // buffered and forwards anything still reaching it until the rooms are swapped over.
+        if (session != null) {
+            session.handOver(member, out);
+            rooms.transfer(session, member);
+        } else if (previous != null && previous != member) {
+            // The old connection has not noticed it is gone yet; its rooms move over now.
+            rooms.transfer(previous, member);
+        }
+        return token;
+    }
+
+    private static void replay(List<MessageHistory.Entry> entries, Consumer<OutboundMessage> out) {
+        for (MessageHistory.Entry entry : entries) {
+            out.accept(OutboundMessage.utf8(entry.utf8(), entry.sequence()));
+        }
+    }
+
+    // Called when a connection closes, before its rooms are left.
+    synchronized void detach(String token, RoomMember member) {
+        if (token == null || !attached.remove(token, member)) {
+            return;
+        }
+        DetachedSession session = new DetachedSession();
+        for (String room : rooms.roomsOf(member)) {
+            rooms.join(room, session);
+        }
+        session.expiry = timers.schedule(() -> expire(token, session), GRACE_MILLIS, TimeUnit.MILLISECONDS);
+        detached.put(token, session);
+    }
+
+    private synchronized void expire(String token, DetachedSession session) {
+        if (detached.remove(token, session)) {
+            rooms.leaveAll(session);
+        }
+    }
+
+    void shutdown() {
+        timers.shutdownNow();
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    static final class PendingReplay {
+
+        private final AtomicBoolean settled = new AtomicBoolean();
+        private final Runnable replay;
+        private volatile ScheduledFuture<?> timer;
+
+        private PendingReplay(Runnable replay) {
+            this.replay = replay;
+        }
+
+        // Called for any input other than a session request; only the first call does anything.
+        void send() {
+            if (settled.compareAndSet(false, true)) {
+                cancelTimer();
+                replay.run();
+            }
+        }
+
+        // Called for a session request.
+        void skip() {
+            if (settled.compareAndSet(false, true)) {
+                cancelTimer();
+            }
+        }
+
+        private void cancelTimer() {
+            ScheduledFuture<?> current = timer;
+            if (current != null) {
+                current.cancel(false);
+            }
+        }
+    }
+
+    // Stands in for a disconnected client in its rooms until it resumes or the session expires.
+    private static final class DetachedSession implements RoomMember {
+
+        private final ArrayDeque<RoomMessage> buffered = new ArrayDeque<>();
+        private int dropped;
+        private ScheduledFuture<?> expiry;
+        private RoomMember resumedBy;
+
+        @Override
+        public synchronized void deliver(RoomMessage message) {
+            if (resumedBy != null) {
+                resumedBy.deliver(message);
+                return;
+            }
+            if (buffered.size() == MAX_BUFFERED_ROOM_MESSAGES) {
+                buffered.pollFirst();
+                dropped++;
+            }
+            buffered.addLast(message);
+        }
+
+        synchronized void handOver(RoomMember member, Consumer<OutboundMessage> out) {
+            if (dropped > 0) {
+                out.accept(OutboundMessage.text(dropped + " room messages were dropped while disconnected."));
+            }
+            RoomMessage message;
+            while ((message = buffered.pollFirst()) != null) {
+                member.deliver(message);
+            }
+            resumedBy = member;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package it.polimi.ingsw.server.sync;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Versioned game state shared by both transports. The game publishes a full encoded snapshot per tick;
+// each subscriber gets a delta against the last version it acknowledged, and a full snapshot only when it
+// joins or when that version is no longer retained. Deltas are computed once per distinct base version, not
+// once per subscriber.
+//
+// Deltas go against the acknowledged version rather than the last one sent because both transports may
+// drop an update: a socket queue overflowing, or an RMI callback timing out. A client keeps the versions it
+// has not seen acknowledged yet, so any delta it gets has a base it still holds.
+public final class GameStateSync {
+
+    static final int RETAINED_VERSIONS = Integer.getInteger("sync.retainedVersions", 16);
+
+    private final ConcurrentHashMap<String, Game> games = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<StateSubscriber, Set<String>> subscriptions = new ConcurrentHashMap<>();
+
+    // The snapshot is owned by the sync from here on and must not be changed. Returns its version.
+    public long publish(String gameId, byte[] snapshot) {
+        return games.computeIfAbsent(gameId, Game::new).publish(snapshot);
+    }
+
+    public void join(String gameId, StateSubscriber subscriber) {
+        subscriptions.computeIfAbsent(subscriber, _ -> ConcurrentHashMap.newKeySet()).add(gameId);
+        games.computeIfAbsent(gameId, Game::new).join(subscriber);
+    }
+
+    public void leave(String gameId, StateSubscriber subscriber) {
+        Game game = games.get(gameId);
+        if (game != null) {
+            game.leave(subscriber);
+        }
+        subscriptions.computeIfPresent(subscriber, (_, joined) -> {
+            joined.remove(gameId);
+            return joined.isEmpty() ? null : joined;
+        });
+    }
+
+    public void leaveAll(StateSubscriber subscriber) {
+        Set<String> joined = subscriptions.remove(subscriber);
+        if (joined == null) {
+            return;
+        }
+        for (String gameId : joined) {
+            Game game = games.get(gameId);
+            if (game != null) {
+                game.leave(subscriber);
+            }
+        }
+    }
+
+    // Version 0 means the client has no usable state, and gets a full snapshot right away.
+    public void acknowledge(String gameId, StateSubscriber subscriber, long version) {
+        Game game = games.get(gameId);
+        if (game != null) {
+            game.acknowledge(subscriber, version);
+        }
+    }
+
+    // Drops a finished game; its subscribers simply stop getting updates.
+    public void remove(String gameId) {
+        games.remove(gameId);
+    }
+
+    public long getVersion(String gameId) {
+        Game game = games.get(gameId);
+        return game == null ? 0 : game.getVersion();
+    }
+
+    private static final class Game {
+
+        private final String id;
+        private final long[] versions = new long[RETAINED_VERSIONS];
+        private final byte[][] snapshots = new byte[RETAINED_VERSIONS][];
+        // Subscriber -> last acknowledged version, 0 for none.
+        private final Map<StateSubscriber, Long> acknowledged = new LinkedHashMap<>();
+        private long version;
+
+        Game(String id) {
+            this.id = id;
+        }
+
+        synchronized long getVersion() {
+            return version;
+        }
+
+        synchronized long publish(byte[] snapshot) {
+            version++;
+            int slot = (int) (version % RETAINED_VERSIONS);
+            versions[slot] = version;
+            snapshots[slot] = snapshot;
+            StateUpdate full = null;
+            Map<Long, StateUpdate> deltas = new HashMap<>();
+            // Sending can drop a subscriber on this thread, leaving the game while the loop runs, so it goes
+            // over a copy and skips anyone who has left since.
+            for (StateSubscriber subscriber : List.copyOf(acknowledged.keySet())) {
+                Long base = acknowledged.get(subscriber);
+                if (base == null) {
+                    continue;
+                }
+                StateUpdate update = retained(base) != null
+                        ? deltas.computeIfAbsent(base, this::delta)
+                        : null;
+                if (update == null) {
+                    if (full == null) {
+                        full = new StateUpdate(id, 0, version, snapshot);
+                    }
+                    update = full;
+                }
+                subscriber.sendState(update);
+            }
+            return version;
+        }
+
+        // Null when a snapshot would be no bigger.
+        private StateUpdate delta(long base) {
+            byte[] current = retained(version);
+            byte[] delta = StateDelta.encode(retained(base), current);
+            return delta.length < current.length ? new StateUpdate(id, base, version, delta) : null;
+        }
+
+        private byte[] retained(long wanted) {
+            int slot = (int) (wanted % RETAINED_VERSIONS);
+            return wanted > 0 && versions[slot] == wanted ? snapshots[slot] : null;
+        }
+
+        synchronized void join(StateSubscriber subscriber) {
+            if (acknowledged.putIfAbsent(subscriber, 0L) == null) {
+                sendSnapshot(subscriber);
+            }
+        }
+
+        synchronized void leave(StateSubscriber subscriber) {
+            acknowledged.remove(subscriber);
+        }
+
+        // Only ever moves forward, except for version 0; an acknowledgement for a version this game never
+        // had is ignored.
+        synchronized void acknowledge(StateSubscriber subscriber, long acknowledgedVersion) {
+            Long current = acknowledged.get(subscriber);
+            if (current == null || acknowledgedVersion > version) {
+                return;
+            }
+            if (acknowledgedVersion == 0) {
+                // Already at 0, it gets a snapshot with every update anyway.
+                if (current != 0) {
+                    acknowledged.put(subscriber, 0L);
+                    sendSnapshot(subscriber);
+                }
+            } else if (acknowledgedVersion > current) {
+                acknowledged.put(subscriber, acknowledgedVersion);
+            }
+        }
+
+        private void sendSnapshot(StateSubscriber subscriber) {
+            byte[] snapshot = retained(version);
+            if (snapshot != null) {
+                subscriber.sendState(new StateUpdate(id, 0, version, snapshot));
+            }
+        }
+    }
+}
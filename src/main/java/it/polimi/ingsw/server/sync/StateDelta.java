@@ -0,0 +1,94 @@
+package it.polimi.ingsw.server.sync;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+// Binary diff between two encoded snapshots: the target length followed by patches, each a varint count of
+// unchanged bytes to skip, a varint length and the replacement bytes. Unchanged stretches are found with
+// Arrays.mismatch, which compares many bytes at a time; changes closer together than MERGE_GAP share one
+// patch, since a patch header costs about as much.
+public final class StateDelta {
+
+    private static final int MERGE_GAP = 4;
+
+    private StateDelta() {
+    }
+
+    public static byte[] encode(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        writeVarint(out, target.length);
+        int length = target.length;
+        int common = Math.min(base.length, length);
+        int position = 0;
+        while (position < length) {
+            int start;
+            if (position < common) {
+                int mismatch = Arrays.mismatch(base, position, common, target, position, common);
+                start = mismatch < 0 ? common : position + mismatch;
+            } else {
+                start = position;
+            }
+            if (start >= length) {
+                break;
+            }
+            int end = start + 1;
+            int equal = 0;
+            while (end + equal < length && equal < MERGE_GAP) {
+                int i = end + equal;
+                if (i < common && base[i] == target[i]) {
+                    equal++;
+                } else {
+                    end = i + 1;
+                    equal = 0;
+                }
+            }
+            writeVarint(out, start - position);
+            writeVarint(out, end - start);
+            out.write(target, start, end - start);
+            position = end;
+        }
+        return out.toByteArray();
+    }
+
+    public static byte[] apply(byte[] base, byte[] delta) {
+        int[] cursor = new int[1];
+        int length = readVarint(delta, cursor);
+        byte[] target = new byte[length];
+        System.arraycopy(base, 0, target, 0, Math.min(base.length, length));
+        int position = 0;
+        while (cursor[0] < delta.length) {
+            position += readVarint(delta, cursor);
+            int patch = readVarint(delta, cursor);
+            if (position + patch > length || cursor[0] + patch > delta.length) {
+                throw new IllegalArgumentException("Corrupt state delta");
+            }
+            System.arraycopy(delta, cursor[0], target, position, patch);
+            cursor[0] += patch;
+            position += patch;
+        }
+        return target;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] in, int[] cursor) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (cursor[0] >= in.length) {
+                throw new IllegalArgumentException("Corrupt state delta");
+            }
+            byte b = in[cursor[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Corrupt state delta");
+    }
+}
@@ -0,0 +1,56 @@
+package it.polimi.ingsw.server.sync;
+
+// Client-side copy of one game's state. It keeps the last RETAINED_VERSIONS states it built, since the
+// server diffs against the last acknowledged version, which may be older than the newest one applied here.
+public final class StateReplica {
+
+    private final String gameId;
+    private final long[] versions = new long[GameStateSync.RETAINED_VERSIONS];
+    private final byte[][] states = new byte[GameStateSync.RETAINED_VERSIONS][];
+    private long version;
+
+    public StateReplica(String gameId) {
+        this.gameId = gameId;
+    }
+
+    public String getGameId() {
+        return gameId;
+    }
+
+    // Returns the version to acknowledge: the update's on success, the current one for a stale update, or 0
+    // when the base is missing and a full snapshot is needed.
+    public synchronized long apply(StateUpdate update) {
+        if (update.getVersion() <= version) {
+            return version;
+        }
+        byte[] state;
+        if (update.isSnapshot()) {
+            state = update.getPayload();
+        } else {
+            byte[] base = retained(update.getBaseVersion());
+            if (base == null) {
+                return 0;
+            }
+            state = StateDelta.apply(base, update.getPayload());
+        }
+        version = update.getVersion();
+        int slot = (int) (version % versions.length);
+        versions[slot] = version;
+        states[slot] = state;
+        return version;
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    // The newest state, or null before the first snapshot. Shared, not copied.
+    public synchronized byte[] getState() {
+        return retained(version);
+    }
+
+    private byte[] retained(long wanted) {
+        int slot = (int) (wanted % versions.length);
+        return wanted > 0 && versions[slot] == wanted ? states[slot] : null;
+    }
+}
@@ -0,0 +1,8 @@
+package it.polimi.ingsw.server.sync;
+
+// A client following one or more games: a socket connection or an RMI client.
+public interface StateSubscriber {
+
+    // Called on the publisher's thread with the game locked, so implementations only queue the update.
+    void sendState(StateUpdate update);
+}
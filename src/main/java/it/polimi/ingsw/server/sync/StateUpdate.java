@@ -0,0 +1,73 @@
+package it.polimi.ingsw.server.sync;
+
+import it.polimi.ingsw.server.codec.StateMessage;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.function.Function;
+
+// One update for one game: either a full snapshot (base version 0) or a StateDelta from the base version.
+// The same object goes to every subscriber that acknowledged the same base, so a transport can cache its
+// wire form here, as with RoomMessage. RMI sends it as is; sockets encode toMessage() with a codec.
+public final class StateUpdate implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private record Encoded(Function<StateUpdate, ?> encoder, Object value) {
+    }
+
+    private final String gameId;
+    private final long baseVersion;
+    private final long version;
+    private final byte[] payload;
+    private transient volatile Encoded encoded;
+
+    public StateUpdate(String gameId, long baseVersion, long version, byte[] payload) {
+        this.gameId = gameId;
+        this.baseVersion = baseVersion;
+        this.version = version;
+        this.payload = payload;
+    }
+
+    public String getGameId() {
+        return gameId;
+    }
+
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isSnapshot() {
+        return baseVersion == 0;
+    }
+
+    // The snapshot itself, or the encoded delta. Shared, not copied.
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public StateMessage toMessage() {
+        return new StateMessage(gameId, baseVersion, version, payload);
+    }
+
+    public static StateUpdate fromMessage(StateMessage message) {
+        return new StateUpdate(message.gameId(), message.baseVersion(), message.version(), message.payload());
+    }
+
+    // The encoder must be a constant: its identity is the cache key.
+    @SuppressWarnings("unchecked")
+    public <T> T encoded(Function<StateUpdate, T> encoder) {
+        Encoded current = encoded;
+        if (current != null && current.encoder() == encoder) {
+            return (T) current.value();
+        }
+        T value = encoder.apply(this);
+        encoded = new Encoded(encoder, value);
+        return value;
+    }
+}
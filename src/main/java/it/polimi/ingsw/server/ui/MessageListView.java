@@ -0,0 +1,100 @@
+package it.polimi.ingsw.server.ui;
+
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.SelectionMode;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+
+import java.util.List;
+
+// The message log of both clients: a ListView only lays out the rows on screen, over a ring buffer that
+// keeps the newest ui.maxMessages lines. append may be called from any thread; lines are added once per
+// frame, so memory and per-frame work stay flat however long the session runs and however fast messages
+// arrive. Rows wrap to the width of the view, so a long message is shown in full on several lines, and the
+// selected lines can be copied with the shortcut or the context menu.
+public final class MessageListView extends ListView<String> {
+
+    private static final int MAX_MESSAGES = Integer.getInteger("ui.maxMessages", 5000);
+    // Lines that can wait for the next frame before the oldest are skipped.
+    private static final int MAX_PENDING = Integer.getInteger("ui.maxPendingMessages", 20_000);
+    // Handled by the view itself, not as a menu accelerator, which would also catch the shortcut in text fields.
+    private static final KeyCombination COPY = new KeyCodeCombination(KeyCode.C, KeyCombination.SHORTCUT_DOWN);
+    // Room for the vertical scroll bar and the cell padding, so wrapped rows never scroll sideways.
+    private static final double WRAP_MARGIN = 24;
+
+    private final RingBufferList<String> messages = new RingBufferList<>(MAX_MESSAGES);
+    private final UiBatcher<String> batcher = new UiBatcher<>(this::appendBatch, MAX_PENDING);
+
+    public MessageListView() {
+        setItems(messages);
+        getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        setCellFactory(view -> new MessageCell());
+        MenuItem copy = new MenuItem("Copy");
+        copy.setOnAction(event -> copySelection());
+        setContextMenu(new ContextMenu(copy));
+        setOnKeyPressed(event -> {
+            if (COPY.match(event)) {
+                copySelection();
+                event.consume();
+            }
+        });
+    }
+
+    public void append(String message) {
+        batcher.add(message);
+    }
+
+    public void appendAll(List<String> batch) {
+        batcher.addAll(batch);
+    }
+
+    // FX thread only.
+    public void clearMessages() {
+        messages.removeAllItems();
+    }
+
+    private void copySelection() {
+        List<String> selected = getSelectionModel().getSelectedItems();
+        if (selected.isEmpty()) {
+            return;
+        }
+        ClipboardContent content = new ClipboardContent();
+        content.putString(String.join(System.lineSeparator(), selected));
+        Clipboard.getSystemClipboard().setContent(content);
+    }
+
+    private void appendBatch(List<String> batch) {
+        int dropped = batcher.takeDropped();
+        if (dropped > 0) {
+            messages.appendAll(List.of("(" + dropped + " messages skipped while the window caught up)"));
+        }
+        // Follows new messages unless the user has scrolled away to read or select older ones.
+        boolean following = getSelectionModel().isEmpty();
+        messages.appendAll(batch);
+        if (following) {
+            scrollTo(messages.size() - 1);
+        }
+    }
+
+    // Only the visible rows are measured, so variable heights cost no more than the rows on screen.
+    private final class MessageCell extends ListCell<String> {
+
+        MessageCell() {
+            setWrapText(true);
+            prefWidthProperty().bind(MessageListView.this.widthProperty().subtract(WRAP_MARGIN));
+            setMaxWidth(USE_PREF_SIZE);
+        }
+
+        @Override
+        protected void updateItem(String item, boolean empty) {
+            super.updateItem(item, empty);
+            setText(empty ? null : item);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package it.polimi.ingsw.server.ui;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+// A read-only observable list over a fixed circular array: appending past the capacity evicts from the
+// head without shifting anything, so a batch costs the same however long the list has been filling.
+// FX thread only, like any list a control observes.
+final class RingBufferList<T> extends ObservableListBase<T> {
+
+    private final Object[] items;
+    private int head;
+    private int size;
+
+    RingBufferList(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.items = new Object[capacity];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        Objects.checkIndex(index, size);
+        return (T) items[(head + index) % items.length];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    int capacity() {
+        return items.length;
+    }
+
+    // One change event per batch: the evicted head, then the appended tail.
+    void appendAll(List<? extends T> batch) {
+        // Of a batch larger than the whole buffer only the newest items could be kept.
+        int from = Math.max(0, batch.size() - items.length);
+        int adding = batch.size() - from;
+        if (adding == 0) {
+            return;
+        }
+        int evicted = Math.max(0, size + adding - items.length);
+        beginChange();
+        try {
+            if (evicted > 0) {
+                List<T> removed = new ArrayList<>(evicted);
+                for (int i = 0; i < evicted; i++) {
+                    removed.add(get(i));
+                }
+                head = (head + evicted) % items.length;
+                size -= evicted;
+                nextRemove(0, removed);
+            }
+            int start = size;
+            for (int i = from; i < batch.size(); i++) {
+                items[(head + size) % items.length] = batch.get(i);
+                size++;
+            }
+            nextAdd(start, size);
+        } finally {
+            endChange();
+        }
+    }
+
+    void removeAllItems() {
+        if (size == 0) {
+            return;
+        }
+        List<T> removed = new ArrayList<>(this);
+        Arrays.fill(items, null);
+        head = 0;
+        size = 0;
+        beginChange();
+        try {
+            nextRemove(0, removed);
+        } finally {
+            endChange();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package it.polimi.ingsw.server.ui;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Hands items from any thread to the FX thread once per frame: a timer runs while items are queued, drains
+// them as one batch on each pulse and stops when the queue is empty, so an idle batcher costs nothing.
+// Past maxPending the oldest are dropped and counted, so a flood cannot grow the queue without bound
+// while the UI catches up.
+public final class UiBatcher<T> {
+
+    // Leaves time for input and layout between very large batches.
+    private static final int MAX_BATCH = 4096;
+
+    private final Consumer<List<T>> sink;
+    private final int maxPending;
+    private final ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+    // True from the first queued item until the timer has found the queue empty.
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            drain();
+        }
+    };
+
+    public UiBatcher(Consumer<List<T>> sink, int maxPending) {
+        this.sink = sink;
+        this.maxPending = maxPending;
+    }
+
+    public void add(T item) {
+        queue.add(item);
+        if (pending.incrementAndGet() > maxPending && queue.poll() != null) {
+            pending.decrementAndGet();
+            dropped.incrementAndGet();
+        }
+        if (running.compareAndSet(false, true)) {
+            Platform.runLater(timer::start);
+        }
+    }
+
+    public void addAll(List<T> items) {
+        for (T item : items) {
+            add(item);
+        }
+    }
+
+    // Items dropped since the last call.
+    public int takeDropped() {
+        return dropped.getAndSet(0);
+    }
+
+    private void drain() {
+        List<T> batch = new ArrayList<>(Math.min(pending.get(), MAX_BATCH));
+        T item;
+        while (batch.size() < MAX_BATCH && (item = queue.poll()) != null) {
+            pending.decrementAndGet();
+            batch.add(item);
+        }
+        if (queue.isEmpty()) {
+            timer.stop();
+            running.set(false);
+            // An item added after the check but before the flag was cleared found it still set.
+            if (!queue.isEmpty() && running.compareAndSet(false, true)) {
+                timer.start();
+            }
+        }
+        if (!batch.isEmpty()) {
+            sink.accept(batch);
+        }
+    }
+}
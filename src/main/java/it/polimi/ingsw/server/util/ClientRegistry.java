@@ -0,0 +1,87 @@
+package it.polimi.ingsw.server.util;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// O(1) add/remove on a concurrent map, plus an immutable snapshot for iteration that is only rebuilt
+// after the membership changed. Readers never take a lock and never see a ConcurrentModificationException.
+public class ClientRegistry<T> implements Iterable<T> {
+
+    private record Snapshot<T>(long version, List<T> members) {
+    }
+
+    private final ConcurrentHashMap<T, Boolean> members = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot<T> snapshot = new Snapshot<>(0, List.of());
+    // Held while rebuilding the snapshot and by replace, so no snapshot is copied halfway through a swap.
+    private final Object rebuildLock = new Object();
+
+    public boolean add(T client) {
+        if (members.putIfAbsent(client, Boolean.TRUE) == null) {
+            version.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    public boolean remove(T client) {
+        if (members.remove(client) != null) {
+            version.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    // Swaps one member for another in a single step: every snapshot has exactly one of them. Returns false,
+    // changing nothing, when from is not a member.
+    public boolean replace(T from, T to) {
+        synchronized (rebuildLock) {
+            if (!members.containsKey(from)) {
+                return false;
+            }
+            members.putIfAbsent(to, Boolean.TRUE);
+            members.remove(from);
+            version.incrementAndGet();
+            return true;
+        }
+    }
+
+    public boolean contains(T client) {
+        return members.containsKey(client);
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    public boolean isEmpty() {
+        return members.isEmpty();
+    }
+
+    public void clear() {
+        members.clear();
+        version.incrementAndGet();
+    }
+
+    public List<T> snapshot() {
+        Snapshot<T> current = snapshot;
+        long currentVersion = version.get();
+        if (current.version() == currentVersion) {
+            return current.members();
+        }
+        synchronized (rebuildLock) {
+            // Tagged with the version read before copying: a concurrent change only forces one more rebuild.
+            currentVersion = version.get();
+            List<T> copy = List.copyOf(members.keySet());
+            snapshot = new Snapshot<>(currentVersion, copy);
+            return copy;
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return snapshot().iterator();
+    }
+}
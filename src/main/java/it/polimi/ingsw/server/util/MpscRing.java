@@ -0,0 +1,74 @@
+package it.polimi.ingsw.server.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+// Bounded multi-producer, single-consumer ring. Producers claim a sequence with one CAS and publish the slot
+// by writing its sequence; the consumer takes slots strictly in claim order. Nothing here blocks: a full ring
+// makes offer return false and leaves waiting or dropping to the caller.
+public class MpscRing<E> {
+
+    private final Object[] slots;
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private final int mask;
+    private volatile long consumed;
+
+    public MpscRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.slots = new Object[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+    }
+
+    public boolean offer(E element) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed > mask) {
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        int slot = (int) (sequence & mask);
+        slots[slot] = element;
+        published.set(slot, sequence + 1);
+        return true;
+    }
+
+    // Only one thread may drain. Returns the number of elements handed to the consumer.
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<? super E> consumer, int maxElements) {
+        long sequence = consumed;
+        int drained = 0;
+        while (drained < maxElements) {
+            int slot = (int) (sequence & mask);
+            if (published.get(slot) != sequence + 1) {
+                break;
+            }
+            E element = (E) slots[slot];
+            slots[slot] = null;
+            sequence++;
+            drained++;
+            consumer.accept(element);
+        }
+        consumed = sequence;
+        return drained;
+    }
+
+    public boolean isEmpty() {
+        long sequence = consumed;
+        return published.get((int) (sequence & mask)) != sequence + 1;
+    }
+
+    // Claimed but not yet consumed; includes slots whose producer has not finished publishing.
+    public int size() {
+        return (int) Math.max(0, claimed.get() - consumed);
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+}
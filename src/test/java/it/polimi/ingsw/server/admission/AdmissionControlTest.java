@@ -0,0 +1,99 @@
+package it.polimi.ingsw.server.admission;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// AdmissionControl is process-wide, so every limit a test changes is put back afterwards.
+class AdmissionControlTest {
+
+    private static final String GAUGE = "test";
+
+    private final AdmissionControl admission = AdmissionControl.global();
+    private double messagesPerSecond;
+    private int burst;
+    private int maxConnections;
+    private long shedQueueDepth;
+
+    @BeforeEach
+    void setUp() {
+        messagesPerSecond = admission.getMessagesPerSecond();
+        burst = admission.getBurst();
+        maxConnections = admission.getMaxConnections();
+        shedQueueDepth = admission.getShedQueueDepth();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        admission.unregisterLoadGauge(GAUGE);
+        admission.setMessagesPerSecond(messagesPerSecond);
+        admission.setBurst(burst);
+        admission.setMaxConnections(maxConnections);
+        admission.setShedQueueDepth(shedQueueDepth);
+        awaitCondition(() -> !admission.isShedding());
+    }
+
+    @Test
+    void rateLimitsPerBucketAndCanBeDisabled() {
+        admission.setMessagesPerSecond(1e-6);
+        admission.setBurst(2);
+        TokenBucket bucket = new TokenBucket();
+        long limited = admission.getRateLimitedMessages();
+
+        assertEquals(AdmissionControl.Verdict.ACCEPTED, admission.admit(bucket, 2));
+        assertEquals(AdmissionControl.Verdict.RATE_LIMITED, admission.admit(bucket, 1));
+        assertEquals(AdmissionControl.Verdict.ACCEPTED, admission.admit(new TokenBucket(), 1));
+        assertEquals(limited + 1, admission.getRateLimitedMessages());
+
+        admission.setMessagesPerSecond(0);
+        assertEquals(AdmissionControl.Verdict.ACCEPTED, admission.admit(bucket, 100));
+    }
+
+    @Test
+    void shedsWhileTheQueuesAreDeepWithoutUsingUpTheRate() throws InterruptedException {
+        admission.setMessagesPerSecond(1e-6);
+        admission.setBurst(1);
+        admission.setShedQueueDepth(10);
+        admission.registerLoadGauge(GAUGE, () -> 11);
+        awaitCondition(admission::isShedding);
+        TokenBucket bucket = new TokenBucket();
+        long shed = admission.getShedMessages();
+
+        assertEquals(AdmissionControl.Verdict.SHED, admission.admit(bucket, 3));
+        assertEquals(shed + 3, admission.getShedMessages());
+
+        admission.unregisterLoadGauge(GAUGE);
+        awaitCondition(() -> !admission.isShedding());
+        assertEquals(AdmissionControl.Verdict.ACCEPTED, admission.admit(bucket, 1));
+    }
+
+    @Test
+    void connectionCapRefusesAboveTheLimit() {
+        admission.setMaxConnections(admission.getActiveConnections() + 1);
+        long rejected = admission.getRejectedConnections();
+
+        assertTrue(admission.tryAcquireConnection());
+        try {
+            assertFalse(admission.tryAcquireConnection());
+            assertEquals(rejected + 1, admission.getRejectedConnections());
+        } finally {
+            admission.releaseConnection();
+        }
+        assertTrue(admission.tryAcquireConnection());
+        admission.releaseConnection();
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for the load sample");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package it.polimi.ingsw.server.admission;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    // Slow enough that nothing refills while a test runs.
+    private static final double NO_REFILL = 1e-6;
+
+    private final TokenBucket bucket = new TokenBucket();
+
+    @Test
+    void startsFullAndRefusesOnceEmpty() {
+        assertTrue(bucket.tryAcquire(4, NO_REFILL, 5));
+        assertTrue(bucket.tryAcquire(1, NO_REFILL, 5));
+        assertFalse(bucket.tryAcquire(1, NO_REFILL, 5));
+    }
+
+    @Test
+    void batchNeedsATokenPerMessage() {
+        assertTrue(bucket.tryAcquire(6, NO_REFILL, 10));
+
+        assertFalse(bucket.tryAcquire(5, NO_REFILL, 10));
+        assertTrue(bucket.tryAcquire(4, NO_REFILL, 10));
+    }
+
+    @Test
+    void batchLargerThanTheCapacityNeedsAFullBucketAndLeavesDebt() throws InterruptedException {
+        assertTrue(bucket.tryAcquire(25, 1000, 10));
+        assertFalse(bucket.tryAcquire(1, 1000, 10));
+
+        // The debt of fifteen takes about 15 ms to pay off; the bucket is full again well within 100 ms.
+        Thread.sleep(100);
+        assertTrue(bucket.tryAcquire(10, 1000, 10));
+    }
+
+    @Test
+    void partlyFullBucketRefusesAnOversizedBatch() {
+        assertTrue(bucket.tryAcquire(1, NO_REFILL, 10));
+
+        assertFalse(bucket.tryAcquire(25, NO_REFILL, 10));
+        assertTrue(bucket.tryAcquire(9, NO_REFILL, 10));
+    }
+
+    @Test
+    void loweredCapacityAppliesStraightAway() {
+        assertTrue(bucket.tryAcquire(1, NO_REFILL, 100));
+
+        assertTrue(bucket.tryAcquire(3, NO_REFILL, 3));
+        assertFalse(bucket.tryAcquire(1, NO_REFILL, 3));
+    }
+}
@@ -0,0 +1,70 @@
+package it.polimi.ingsw.server.bus;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageBusTest {
+
+    private static final int CAPACITY = 8;
+    private static final long PUBLISH_TIMEOUT_MILLIS = 2_000;
+
+    private final MessageBus bus = new MessageBus(CAPACITY, 0, PUBLISH_TIMEOUT_MILLIS);
+    private final CountDownLatch dispatching = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        bus.shutdown();
+    }
+
+    @Test
+    void tryPublishDropsAtOnceWhenTheRingIsFull() throws InterruptedException {
+        stallDispatcher();
+        for (int i = 0; i < CAPACITY; i++) {
+            assertTrue(bus.tryPublish(message()));
+        }
+
+        long start = System.nanoTime();
+        assertFalse(bus.tryPublish(message()));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < PUBLISH_TIMEOUT_MILLIS / 2);
+        assertEquals(1, bus.getDroppedCount());
+    }
+
+    @Test
+    void publishedMessagesAreDeliveredOnceThereIsRoom() throws InterruptedException {
+        CountDownLatch delivered = new CountDownLatch(CAPACITY + 1);
+        bus.register(batch -> batch.forEach(_ -> delivered.countDown()));
+        stallDispatcher();
+        for (int i = 0; i < CAPACITY; i++) {
+            assertTrue(bus.tryPublish(message()));
+        }
+        release.countDown();
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+    }
+
+    // The dispatcher takes the first message and then blocks in an adapter, so nothing more is drained.
+    private void stallDispatcher() throws InterruptedException {
+        bus.register(_ -> {
+            dispatching.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(bus.publish(message()));
+        assertTrue(dispatching.await(5, TimeUnit.SECONDS));
+    }
+
+    private static BusMessage message() {
+        return BusMessage.text("test", null, "hello");
+    }
+}
@@ -0,0 +1,84 @@
+package it.polimi.ingsw.server.cluster;
+
+import it.polimi.ingsw.server.bus.BusMessage;
+import it.polimi.ingsw.server.bus.MessageBus;
+import it.polimi.ingsw.server.room.RoomManager;
+import it.polimi.ingsw.server.socket.Frame;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterRelayTest {
+
+    private final MessageBus senderBus = new MessageBus();
+    private final MessageBus receiverBus = new MessageBus();
+    private final List<byte[]> received = Collections.synchronizedList(new ArrayList<>());
+    private ClusterRelay sender;
+    private ClusterRelay receiver;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        int receiverPort = freePort();
+        receiver = new ClusterRelay(new ClusterConfig("receiver", receiverPort, List.of()), receiverBus, new RoomManager());
+        sender = new ClusterRelay(new ClusterConfig("sender", freePort(),
+                List.of(InetSocketAddress.createUnresolved("localhost", receiverPort))), senderBus, new RoomManager());
+        receiverBus.register(batch -> batch.forEach(message -> received.add(message.getUtf8())));
+        receiver.start();
+        sender.start();
+        // Until the link is up, relayed messages wait in the link's queue, so one probe is enough.
+        senderBus.publish(BusMessage.text("socket", null, "probe"));
+        awaitReceived(1);
+        received.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        sender.stop();
+        receiver.stop();
+        senderBus.shutdown();
+        receiverBus.shutdown();
+    }
+
+    // A batch is closed before a message would push it past a frame, and a message no frame can hold is
+    // dropped instead of breaking the link.
+    @Test
+    void largeMessagesNeverOverflowAFrame() throws Exception {
+        int[] sizes = {200 * 1024, Frame.MAX_PAYLOAD_LENGTH - 1024, Frame.MAX_PAYLOAD_LENGTH + 1, 16};
+        for (int size : sizes) {
+            senderBus.publish(BusMessage.utf8("socket", null, new byte[size]));
+        }
+        senderBus.publish(BusMessage.text("socket", null, "after"));
+
+        awaitReceived(4);
+        List<Integer> lengths;
+        synchronized (received) {
+            lengths = received.stream().map(bytes -> bytes.length).toList();
+        }
+        assertEquals(List.of(sizes[0], sizes[1], sizes[3], "after".length()), lengths);
+        assertTrue(sender.getDroppedCount() >= 1);
+    }
+
+    private void awaitReceived(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (received.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(received.size() >= count, "received " + received.size() + " of " + count);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package it.polimi.ingsw.server.codec;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinaryCodecTest {
+
+    @Test
+    void roundTripsEveryMessageType() {
+        for (Message message : new Message[]{new ChatMessage("héllo"), new RoomChatMessage("lobby", "hi"),
+                new StateAck("g1", Long.MIN_VALUE)}) {
+            assertEquals(message, MessageCodec.BINARY.decode(MessageCodec.BINARY.encode(message)));
+            assertEquals(message, MessageCodec.JSON.decode(MessageCodec.JSON.encode(message)));
+        }
+    }
+
+    @Test
+    void roundTripsStatePayloads() {
+        StateMessage state = new StateMessage("g1", 3, 4, new byte[]{0, -1, '\n', 42});
+        for (MessageCodec codec : new MessageCodec[]{MessageCodec.BINARY, MessageCodec.JSON}) {
+            StateMessage decoded = (StateMessage) codec.decode(codec.encode(state));
+            assertEquals("g1", decoded.gameId());
+            assertEquals(3, decoded.baseVersion());
+            assertEquals(4, decoded.version());
+            assertArrayEquals(state.payload(), decoded.payload());
+        }
+    }
+
+    @Test
+    void rejectsNegativeStringLength() {
+        // Chat schema id, then a ten-byte varint that decodes to -1 as the text length.
+        byte[] bytes = {1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 1};
+        assertThrows(IllegalArgumentException.class, () -> MessageCodec.BINARY.decode(bytes));
+    }
+
+    @Test
+    void rejectsStringLengthPastEnd() {
+        byte[] bytes = {1, 10, 'a', 'b'};
+        assertThrows(IllegalArgumentException.class, () -> MessageCodec.BINARY.decode(bytes));
+    }
+
+    @Test
+    void rejectsSchemaIdsThatOnlyMatchOnceNarrowed() {
+        // 2^32 + 1 and 0xFFFFFFFF00000001 as the schema id, each followed by a valid chat body; as an int
+        // either would read as the chat schema.
+        byte[] pastIntRange = {(byte) 0x81, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x10, 2, 'h', 'i'};
+        byte[] negative = {(byte) 0x81, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0xF0, -1, -1, -1, -1, 1,
+                2, 'h', 'i'};
+        assertThrows(IllegalArgumentException.class, () -> MessageCodec.BINARY.decode(pastIntRange));
+        assertThrows(IllegalArgumentException.class, () -> MessageCodec.BINARY.decode(negative));
+    }
+}
@@ -0,0 +1,91 @@
+package it.polimi.ingsw.server.history;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MessageHistoryTest {
+
+    @Test
+    void numbersFromOneAndPagesBySequence() {
+        MessageHistory history = new MessageHistory(8, 1024);
+        append(history, "a", "b", "c", "d");
+
+        assertEquals(4, history.getLastSequence());
+        assertEquals(List.of("a", "b"), texts(history.since(0, 2)));
+        assertEquals(List.of("c", "d"), texts(history.since(2, 2)));
+        assertEquals(List.of(), texts(history.since(4, 2)));
+        assertEquals(List.of("c", "d"), texts(history.last(2)));
+    }
+
+    @Test
+    void reusedIndexSlotsEvictTheOldest() {
+        MessageHistory history = new MessageHistory(4, 1024);
+        for (int i = 1; i <= 10; i++) {
+            append(history, "m" + i);
+        }
+
+        assertEquals(List.of(7L, 8L, 9L, 10L), sequences(history.since(0, 100)));
+        assertEquals(List.of("m7", "m8", "m9", "m10"), texts(history.since(3, 100)));
+        assertEquals(List.of("m9", "m10"), texts(history.since(8, 100)));
+    }
+
+    // Six-byte entries in a sixteen-byte ring: the third wraps around the end and overwrites the first.
+    @Test
+    void reusedBytesEvictTheOldestAndWrappedEntriesReadBack() {
+        MessageHistory history = new MessageHistory(8, 16);
+        append(history, "first-", "second", "third!");
+
+        assertEquals(List.of("second", "third!"), texts(history.since(0, 100)));
+
+        append(history, "fourth", "fifth!");
+        assertEquals(List.of("fourth", "fifth!"), texts(history.since(0, 100)));
+        assertEquals(List.of(4L, 5L), sequences(history.last(8)));
+    }
+
+    @Test
+    void oversizedMessageTakesASequenceButIsNotKept() {
+        MessageHistory history = new MessageHistory(8, 16);
+        append(history, "small", "far too large for the ring", "after");
+
+        assertEquals(3, history.getLastSequence());
+        assertEquals(List.of(1L, 3L), sequences(history.since(0, 100)));
+        assertEquals(List.of("small", "after"), texts(history.since(0, 100)));
+    }
+
+    @Test
+    void longRunKeepsTheNewestWithinBothBounds() {
+        MessageHistory history = new MessageHistory(16, 100);
+        for (int i = 1; i <= 1000; i++) {
+            append(history, String.format("%09d", i));
+        }
+
+        // Eleven nine-byte entries fit in a hundred bytes, fewer than the sixteen index slots.
+        assertEquals(LongStream.rangeClosed(990, 1000).boxed().toList(), sequences(history.since(0, 100)));
+        assertEquals("000001000", history.last(1).getFirst().text());
+    }
+
+    @Test
+    void lengthMustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new MessageHistory(10, 1024));
+    }
+
+    private static void append(MessageHistory history, String... texts) {
+        for (String text : texts) {
+            history.append(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static List<String> texts(List<MessageHistory.Entry> entries) {
+        return entries.stream().map(MessageHistory.Entry::text).toList();
+    }
+
+    private static List<Long> sequences(List<MessageHistory.Entry> entries) {
+        return entries.stream().map(MessageHistory.Entry::sequence).toList();
+    }
+}
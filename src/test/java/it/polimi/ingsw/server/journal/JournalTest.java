@@ -0,0 +1,137 @@
+package it.polimi.ingsw.server.journal;
+
+import it.polimi.ingsw.server.bus.BusMessage;
+import it.polimi.ingsw.server.bus.MessageBus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalTest {
+
+    private static final int SEGMENT_BYTES = 64 * 1024;
+
+    @TempDir
+    Path directory;
+
+    private final Semaphore delivered = new Semaphore(0);
+    private MessageBus bus;
+    private volatile boolean journaling = true;
+
+    @AfterEach
+    void tearDown() {
+        if (bus != null) {
+            bus.shutdown();
+        }
+    }
+
+    @Test
+    void reopensWithAnEmptyTailSegment() throws Exception {
+        open().close();
+        open().close();
+
+        Journal journal = open();
+        append("first");
+        journal.close();
+
+        Journal reopened = open();
+        assertEquals(1, reopened.getLastSequence());
+        assertEquals(List.of("first"), texts(reopened.read(1, 10)));
+        reopened.close();
+    }
+
+    @Test
+    void sequencesCarryOnAcrossRestarts() throws Exception {
+        Journal journal = open();
+        append("first");
+        append("second");
+        journal.close();
+
+        // Restarting with no traffic leaves an empty tail behind, which the next start must accept.
+        open().close();
+
+        Journal reopened = open();
+        append("third");
+        reopened.close();
+
+        Journal last = open();
+        assertEquals(3, last.getLastSequence());
+        assertEquals(List.of("first", "second", "third"), texts(last.read(1, 10)));
+        last.close();
+    }
+
+    @Test
+    void missedMessageLeavesAGapThatSurvivesARestart() throws Exception {
+        Journal journal = open();
+        append("first");
+        journaling = false;
+        append("missed");
+        journaling = true;
+        append("third");
+        journal.close();
+
+        Journal reopened = open();
+        append("fourth");
+        reopened.close();
+
+        Journal last = open();
+        List<JournalRecord> records = last.read(1, 10);
+        assertEquals(List.of(1L, 3L, 4L), records.stream().map(JournalRecord::sequence).toList());
+        assertEquals(List.of("first", "third", "fourth"), texts(records));
+        assertEquals(List.of("third", "fourth"), texts(last.read(2, 10)));
+        last.close();
+    }
+
+    @Test
+    void recordsAreStampedWithThePublishTime() throws Exception {
+        Journal journal = open();
+        BusMessage message = BusMessage.text("socket", null, "first");
+        Thread.sleep(50);
+        publish(message);
+        journal.close();
+
+        Journal reopened = open();
+        assertEquals(message.getPublishedMillis(), reopened.read(1, 1).getFirst().timestampMillis());
+        assertEquals(1, reopened.sequenceAt(message.getPublishedMillis()));
+        reopened.close();
+    }
+
+    // Every open stands for a server start, so it gets a fresh bus numbering from 1.
+    private Journal open() throws IOException {
+        if (bus != null) {
+            bus.shutdown();
+        }
+        Journal journal = new Journal(directory, SEGMENT_BYTES, 4, FsyncPolicy.BATCH, 100);
+        bus = new MessageBus();
+        bus.register(batch -> {
+            if (journaling) {
+                journal.deliver(batch);
+            }
+            delivered.release(batch.size());
+        });
+        return journal;
+    }
+
+    private void append(String text) throws InterruptedException {
+        publish(BusMessage.text("socket", null, text));
+    }
+
+    // Closing drains the writer's queue, so once the bus has handed the message over, it is on disk after
+    // close.
+    private void publish(BusMessage message) throws InterruptedException {
+        assertTrue(bus.publish(message));
+        assertTrue(delivered.tryAcquire(5, TimeUnit.SECONDS));
+    }
+
+    private static List<String> texts(List<JournalRecord> records) {
+        return records.stream().map(JournalRecord::text).toList();
+    }
+}
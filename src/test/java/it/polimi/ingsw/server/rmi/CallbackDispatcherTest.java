@@ -0,0 +1,80 @@
+package it.polimi.ingsw.server.rmi;
+
+import it.polimi.ingsw.server.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CallbackDispatcherTest {
+
+    private static final long TIMEOUT_MILLIS = 50;
+
+    private final AtomicInteger failures = new AtomicInteger();
+    private final CallbackDispatcher dispatcher = new CallbackDispatcher(TIMEOUT_MILLIS,
+            new CallbackDispatcher.OutcomeListener() {
+                @Override
+                public void onSuccess(ProxyClient client) {
+                }
+
+                @Override
+                public void onFailure(ProxyClient client, Throwable error) {
+                    failures.incrementAndGet();
+                }
+            }, MetricsRegistry.global().transport("test"));
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    // The first call ignores the interrupt and runs well past its timeout; the second must still wait for it.
+    @Test
+    void timedOutCallStillHoldsBackTheNextOne() throws Exception {
+        ProxyClient client = message -> {
+        };
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+        dispatcher.dispatch(client, _ -> {
+            events.add("first started");
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS * 4);
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+            events.add("first returned");
+        });
+        dispatcher.dispatch(client, _ -> events.add("second")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("first started", "first returned", "second"), events);
+        assertEquals(1, failures.get());
+    }
+
+    @Test
+    void timedOutCallIsInterrupted() throws Exception {
+        ProxyClient client = message -> {
+        };
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+        dispatcher.dispatch(client, _ -> {
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+                events.add("slept");
+            } catch (InterruptedException e) {
+                events.add("interrupted");
+            }
+        });
+        long start = System.nanoTime();
+        dispatcher.dispatch(client, _ -> events.add("second")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("interrupted", "second"), events);
+        assertEquals(1, failures.get());
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5);
+    }
+}
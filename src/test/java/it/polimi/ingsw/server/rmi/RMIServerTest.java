@@ -0,0 +1,223 @@
+package it.polimi.ingsw.server.rmi;
+
+import it.polimi.ingsw.server.admission.AdmissionControl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RMIServerTest {
+
+    private static final long CALLBACK_TIMEOUT_MILLIS = 200;
+
+    private RMIServer server;
+    private double messagesPerSecond;
+    private int burst;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        messagesPerSecond = AdmissionControl.global().getMessagesPerSecond();
+        burst = AdmissionControl.global().getBurst();
+        AdmissionControl.global().setMessagesPerSecond(0);
+        // No heartbeat and no coalescing: every broadcast is its own callback.
+        server = new RMIServer(CALLBACK_TIMEOUT_MILLIS, 3, 0, 0);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.shutdown();
+        UnicastRemoteObject.unexportObject(server, true);
+        AdmissionControl.global().setMessagesPerSecond(messagesPerSecond);
+        AdmissionControl.global().setBurst(burst);
+    }
+
+    // Together the callbacks take far longer than the timeout, but each one alone is well within it.
+    // Messages from a registered client are fanned out one callback each rather than batched.
+    @Test
+    void burstToHealthyClientDeliversEverythingWithoutEviction() throws Exception {
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        server.registerClient(message -> {
+            if (message.startsWith("burst ")) {
+                sleep(CALLBACK_TIMEOUT_MILLIS / 4);
+                received.add(message);
+            }
+        });
+
+        ProxyClient sender = registerSender();
+        for (int i = 0; i < 10; i++) {
+            server.broadcastMessage("burst " + i, sender);
+        }
+
+        awaitCondition(() -> received.size() == 10, 5000);
+        assertEquals(IntStream.range(0, 10).mapToObj(i -> "burst " + i).toList(), received);
+        assertEquals(2, server.getClientCount());
+    }
+
+    @Test
+    void hungClientIsEvicted() throws Exception {
+        server.registerClient(message -> {
+            if (message.startsWith("hang ")) {
+                sleep(CALLBACK_TIMEOUT_MILLIS * 10);
+            }
+        });
+
+        ProxyClient sender = registerSender();
+        for (int i = 0; i < 3; i++) {
+            server.broadcastMessage("hang " + i, sender);
+        }
+
+        awaitCondition(() -> server.getClientCount() == 1, 5000);
+        assertEquals(1, server.getClientCount());
+    }
+
+    // Clients come and go while others broadcast. Nothing may throw, the clients that stayed get every
+    // broadcast, and the registry ends up with just them.
+    @Test
+    void concurrentRegisterRemoveAndBroadcast() throws Exception {
+        int observers = 8;
+        int churners = 4;
+        int broadcasters = 2;
+        int rounds = 500;
+        List<AtomicInteger> counts = new ArrayList<>();
+        for (int i = 0; i < observers; i++) {
+            AtomicInteger count = new AtomicInteger();
+            counts.add(count);
+            server.registerClient(message -> {
+                if (message.startsWith("stress ")) {
+                    count.incrementAndGet();
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(churners + broadcasters);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> tasks = new ArrayList<>();
+        try {
+            for (int c = 0; c < churners; c++) {
+                tasks.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < rounds; i++) {
+                        ProxyClient client = _ -> {
+                        };
+                        server.registerClient(client);
+                        server.broadcastMessage("churn " + i, client);
+                        server.removeClient(client);
+                    }
+                    return null;
+                }));
+            }
+            for (int b = 0; b < broadcasters; b++) {
+                tasks.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < rounds; i++) {
+                        server.broadcastMessage("stress " + i);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> task : tasks) {
+                task.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int expected = broadcasters * rounds;
+        awaitCondition(() -> counts.stream().allMatch(count -> count.get() == expected), 10_000);
+        for (AtomicInteger count : counts) {
+            assertEquals(expected, count.get());
+        }
+        assertEquals(observers, server.getClientCount());
+    }
+
+    // Unregistered callers that name a stub each get their own bucket rather than sharing their host's, and
+    // many other callers do not start a limited one over.
+    @Test
+    void unregisteredSendersAreLimitedPerStub() throws Exception {
+        AdmissionControl.global().setBurst(1);
+        AdmissionControl.global().setMessagesPerSecond(0.001);
+        ProxyClient first = new SilentClient();
+        ProxyClient second = new SilentClient();
+        server.broadcastMessage("first", first);
+        server.broadcastMessage("second", second);
+        assertThrows(IllegalStateException.class, () -> server.broadcastMessage("again", first));
+
+        for (int i = 0; i < 2_000; i++) {
+            server.broadcastMessage("other " + i, new SilentClient());
+            if (i % 500 == 0) {
+                assertThrows(IllegalStateException.class, () -> server.broadcastMessage("again", first));
+            }
+        }
+        assertThrows(IllegalStateException.class, () -> server.broadcastMessage("again", first));
+    }
+
+    private ProxyClient registerSender() throws Exception {
+        ProxyClient sender = _ -> {
+        };
+        server.registerClient(sender);
+        return sender;
+    }
+
+    @Test
+    void heartbeatIsNotCountedAsFanOut() throws Exception {
+        RMIServer pinging = new RMIServer(CALLBACK_TIMEOUT_MILLIS, 3, 10, 0);
+        try {
+            AtomicInteger pings = new AtomicInteger();
+            long fanOuts = pinging.getFanOutLatency().getCount();
+            pinging.registerClient(new SilentClient() {
+                @Override
+                public void ping() {
+                    pings.incrementAndGet();
+                }
+            });
+
+            awaitCondition(() -> pings.get() >= 3, 5000);
+            assertTrue(pings.get() >= 3);
+            assertEquals(fanOuts, pinging.getFanOutLatency().getCount());
+        } finally {
+            pinging.shutdown();
+            UnicastRemoteObject.unexportObject(pinging, true);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitCondition(BooleanSupplier condition, long timeoutMillis)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    // A class rather than a lambda: a lambda that captures nothing is one shared instance per call site.
+    private static class SilentClient implements ProxyClient {
+
+        @Override
+        public void showMessage(String message) {
+        }
+    }
+}
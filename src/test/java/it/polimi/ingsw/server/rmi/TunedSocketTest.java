@@ -0,0 +1,98 @@
+package it.polimi.ingsw.server.rmi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TunedSocketTest {
+
+    private static final RmiSocketConfig COMPRESSING = new RmiSocketConfig(true, 0, 0, 64);
+
+    private ServerSocket serverSocket;
+    private Socket client;
+    private Socket accepted;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        serverSocket = COMPRESSING.serverSocketFactory().createServerSocket(0);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (AutoCloseable closeable : new AutoCloseable[]{client, accepted, serverSocket}) {
+            try {
+                if (closeable != null) {
+                    closeable.close();
+                }
+            } catch (Exception e) {
+                // Already closed by the test.
+            }
+        }
+    }
+
+    @Test
+    void compressesLargeFramesAndPassesSmallOnes() throws IOException {
+        connect();
+        byte[] large = new byte[10_000];
+        Arrays.fill(large, (byte) 'a');
+        byte[] small = "hi".getBytes(StandardCharsets.UTF_8);
+        OutputStream out = client.getOutputStream();
+        out.write(large);
+        out.flush();
+        out.write(small);
+        out.flush();
+
+        InputStream in = accepted.getInputStream();
+        assertArrayEquals(large, in.readNBytes(large.length));
+        assertArrayEquals(small, in.readNBytes(small.length));
+    }
+
+    @Test
+    void partialReadDoesNotWaitForTheNextFrame() throws IOException {
+        connect();
+        OutputStream out = client.getOutputStream();
+        out.write(new byte[]{1, 2, 3});
+        out.flush();
+        // Nothing else is sent, so a read that waited for more would time out.
+        accepted.setSoTimeout(2000);
+
+        byte[] buffer = new byte[100];
+        assertEquals(3, accepted.getInputStream().read(buffer, 0, buffer.length));
+        assertArrayEquals(new byte[]{1, 2, 3}, Arrays.copyOf(buffer, 3));
+    }
+
+    @Test
+    void plainRmiPeerGetsAClearError() throws IOException {
+        client = new Socket("127.0.0.1", serverSocket.getLocalPort());
+        accepted = serverSocket.accept();
+        client.getOutputStream().write(new byte[]{'J', 'R', 'M', 'I', 0, 2, 0x4b});
+        client.getOutputStream().flush();
+
+        IOException error = assertThrows(IOException.class, () -> accepted.getInputStream().read());
+        assertTrue(error.getMessage().contains("plain RMI"), error.getMessage());
+    }
+
+    @Test
+    void defaultsToNoCompression() {
+        assertFalse(RmiSocketConfig.fromSystemProperties().compresses());
+    }
+
+    private void connect() throws IOException {
+        client = COMPRESSING.clientSocketFactory().createSocket("127.0.0.1", serverSocket.getLocalPort());
+        accepted = serverSocket.accept();
+    }
+}
@@ -0,0 +1,131 @@
+package it.polimi.ingsw.server.room;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoomManagerTest {
+
+    private final RoomManager rooms = new RoomManager();
+
+    @Test
+    void emptyRoomsAreDropped() {
+        Member member = new Member();
+
+        assertTrue(rooms.join("lobby", member));
+        assertFalse(rooms.join("lobby", member));
+        assertEquals(List.of("lobby"), rooms.roomsOf(member));
+        assertTrue(rooms.leave("lobby", member));
+        assertFalse(rooms.leave("lobby", member));
+
+        assertEquals(0, rooms.getRoomCount());
+        assertEquals(List.of(), rooms.roomsOf(member));
+    }
+
+    @Test
+    void invalidRoomNamesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> rooms.join("two words", new Member()));
+        assertThrows(IllegalArgumentException.class, () -> rooms.join("", new Member()));
+    }
+
+    @Test
+    void publishSkipsTheSender() {
+        Member sender = new Member();
+        Member other = new Member();
+        rooms.join("lobby", sender);
+        rooms.join("lobby", other);
+
+        assertEquals(1, rooms.publish("lobby", "hello", sender));
+
+        assertEquals(List.of(), sender.texts());
+        assertEquals(List.of("hello"), other.texts());
+    }
+
+    @Test
+    void transferMovesEveryRoom() {
+        Member from = new Member();
+        Member to = new Member();
+        rooms.join("a", from);
+        rooms.join("b", from);
+
+        rooms.transfer(from, to);
+        rooms.publish("a", "hello", null);
+
+        assertEquals(List.of(), rooms.roomsOf(from));
+        assertEquals(List.of("a", "b"), rooms.roomsOf(to).stream().sorted().toList());
+        assertEquals(List.of("hello"), to.texts());
+        assertEquals(List.of(), from.texts());
+    }
+
+    // Two threads join and leave the same members' rooms. Between rounds, with both threads parked on the
+    // barrier, the rooms must agree with each member's own list whatever the interleaving was.
+    @Test
+    void concurrentJoinAndLeaveStayConsistent() throws Exception {
+        List<Member> members = IntStream.range(0, 64).mapToObj(_ -> new Member()).toList();
+        List<String> disagreements = Collections.synchronizedList(new ArrayList<>());
+        CyclicBarrier barrier = new CyclicBarrier(2, () -> {
+            for (Member member : members) {
+                for (String room : List.of("lobby", "game")) {
+                    if (rooms.isMember(room, member) != rooms.roomsOf(member).contains(room)) {
+                        disagreements.add(room);
+                    }
+                }
+            }
+        });
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        Thread joiner = Thread.ofPlatform().start(() -> churn(members, barrier, errors, member -> {
+            rooms.join("lobby", member);
+            rooms.join("game", member);
+        }));
+        Thread leaver = Thread.ofPlatform().start(() -> churn(members, barrier, errors, member -> {
+            rooms.leave("lobby", member);
+            rooms.leaveAll(member);
+        }));
+        joiner.join();
+        leaver.join();
+
+        assertEquals(List.of(), errors);
+        assertEquals(List.of(), disagreements);
+        members.forEach(rooms::leaveAll);
+        assertEquals(0, rooms.getRoomCount());
+    }
+
+    private static void churn(List<Member> members, CyclicBarrier barrier, List<Throwable> errors,
+                              Consumer<Member> step) {
+        try {
+            for (int round = 0; round < 5_000; round++) {
+                barrier.await();
+                for (Member member : members) {
+                    step.accept(member);
+                }
+            }
+            barrier.await();
+        } catch (Exception e) {
+            errors.add(e);
+        }
+    }
+
+    private static final class Member implements RoomMember {
+
+        private final List<String> texts = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void deliver(RoomMessage message) {
+            texts.add(message.getText());
+        }
+
+        List<String> texts() {
+            return List.copyOf(texts);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package it.polimi.ingsw.server.socket;
+
+import it.polimi.ingsw.server.codec.MessageCodec;
+import it.polimi.ingsw.server.codec.StateMessage;
+import it.polimi.ingsw.server.sync.StateUpdate;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboundMessageTest {
+
+    @Test
+    void relayedFrameCannotForgeLines() throws IOException {
+        byte[] body = OutboundMessage.relayBody("/1.2.3.4: ".getBytes(StandardCharsets.UTF_8),
+                ByteBuffer.wrap(("hi\n" + Frame.REJECTED + " bye\r\nx").getBytes(StandardCharsets.UTF_8)));
+        OutboundMessage message = OutboundMessage.utf8(body, 0);
+
+        String expected = "/1.2.3.4: hi " + Frame.REJECTED + " bye  x\n";
+        assertEquals(expected, lineMode(message));
+        assertEquals(expected, written(message));
+    }
+
+    @Test
+    void busMessageCannotStartWithControlCharacter() throws IOException {
+        OutboundMessage message = OutboundMessage.utf8(Frame.REJECTED.getBytes(StandardCharsets.UTF_8), 0);
+
+        assertEquals(" REJECTED\n", lineMode(message));
+        assertEquals(" REJECTED\n", written(message));
+    }
+
+    @Test
+    void binaryModeAndServerControlLinesAreUnchanged() {
+        byte[] body = "a\nb".getBytes(StandardCharsets.UTF_8);
+        ArrayDeque<ByteBuffer> segments = new ArrayDeque<>();
+        OutboundMessage.utf8(body, 0).appendSegments(segments, true, false);
+        assertEquals(body.length, segments.pollFirst().getInt());
+        assertEquals("a\nb", StandardCharsets.UTF_8.decode(segments.pollFirst()).toString());
+
+        assertEquals(Frame.REJECTED + " full\n", lineMode(OutboundMessage.text(Frame.REJECTED + " full")));
+    }
+
+    @Test
+    void stateFramesCarryTheBinaryCodec() {
+        StateUpdate update = new StateUpdate("g1", 0, 7, new byte[]{1, 2, 3});
+        ArrayDeque<ByteBuffer> segments = new ArrayDeque<>();
+        update.encoded(OutboundMessage.FROM_STATE_UPDATE).appendSegments(segments, true, false);
+        ByteBuffer header = segments.pollFirst();
+        ByteBuffer body = segments.pollFirst();
+        assertEquals(body.remaining(), header.getInt());
+        assertEquals(Frame.TYPE_STATE, header.get());
+
+        byte[] bytes = new byte[body.remaining()];
+        body.get(bytes);
+        StateUpdate decoded = StateUpdate.fromMessage((StateMessage) MessageCodec.BINARY.decode(bytes));
+        assertEquals("g1", decoded.getGameId());
+        assertEquals(7, decoded.getVersion());
+        assertArrayEquals(update.getPayload(), decoded.getPayload());
+
+        // Nothing to show a line-mode reader.
+        segments.clear();
+        update.encoded(OutboundMessage.FROM_STATE_UPDATE).appendSegments(segments, false, false);
+        assertTrue(segments.isEmpty());
+    }
+
+    private static String lineMode(OutboundMessage message) {
+        ArrayDeque<ByteBuffer> segments = new ArrayDeque<>();
+        message.appendSegments(segments, false, false);
+        StringBuilder line = new StringBuilder();
+        for (ByteBuffer segment : segments) {
+            line.append(StandardCharsets.UTF_8.decode(segment));
+        }
+        return line.toString();
+    }
+
+    private static String written(OutboundMessage message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeLine(out, false);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,50 @@
+package it.polimi.ingsw.server.socket;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboundQueueTest {
+
+    private static final long BLOCK_TIMEOUT_MILLIS = 1_000;
+
+    // A caller that may not wait gets DISCONNECT straight away, and nothing already queued is dropped.
+    @Test
+    void blockWaitsOnlyForCallersThatMayWait() {
+        OutboundQueue<Integer> queue = new OutboundQueue<>(2, OverflowPolicy.BLOCK, BLOCK_TIMEOUT_MILLIS);
+        assertTrue(queue.offer(1, true));
+        assertTrue(queue.offer(2, true));
+
+        long start = System.nanoTime();
+        assertFalse(queue.offer(3, false));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < BLOCK_TIMEOUT_MILLIS / 2);
+        assertEquals(0, queue.getDroppedCount());
+        assertEquals(1, queue.poll());
+        assertEquals(2, queue.poll());
+    }
+
+    @Test
+    void blockGivesUpAfterTheTimeout() {
+        OutboundQueue<Integer> queue = new OutboundQueue<>(1, OverflowPolicy.BLOCK, 50);
+        assertTrue(queue.offer(1, true));
+
+        assertFalse(queue.offer(2, true));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    void otherPoliciesIgnoreWhetherTheCallerMayWait() {
+        OutboundQueue<Integer> disconnect = new OutboundQueue<>(1, OverflowPolicy.DISCONNECT, BLOCK_TIMEOUT_MILLIS);
+        assertTrue(disconnect.offer(1, false));
+        assertFalse(disconnect.offer(2, false));
+
+        OutboundQueue<Integer> dropOldest = new OutboundQueue<>(1, OverflowPolicy.DROP_OLDEST, BLOCK_TIMEOUT_MILLIS);
+        assertTrue(dropOldest.offer(1, true));
+        assertTrue(dropOldest.offer(2, true));
+        assertEquals(2, dropOldest.poll());
+    }
+}
@@ -0,0 +1,220 @@
+package it.polimi.ingsw.server.socket;
+
+import it.polimi.ingsw.server.history.MessageHistory;
+import it.polimi.ingsw.server.room.RoomManager;
+import it.polimi.ingsw.server.room.RoomMember;
+import it.polimi.ingsw.server.room.RoomMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionManagerTest {
+
+    private static final String ROOM = "lobby";
+
+    private final RoomManager rooms = new RoomManager();
+    private final MessageHistory history = new MessageHistory(1024, 64 * 1024);
+    private final SessionManager sessions = new SessionManager(rooms, history);
+
+    @AfterEach
+    void tearDown() {
+        sessions.shutdown();
+    }
+
+    @Test
+    void newSessionReplaysRecentHistory() {
+        broadcast("one", "two");
+        Member member = new Member();
+
+        String token = sessions.handle(member, null, Frame.SESSION_REQUEST, member.out);
+
+        assertEquals(List.of(reply(token, Frame.SESSION_NEW), "\0#1 one", "\0#2 two"), member.lines());
+    }
+
+    @Test
+    void resumeGetsMissedBroadcastsAndBufferedRoomMessagesFirst() {
+        Member first = new Member();
+        String token = sessions.handle(first, null, Frame.SESSION_REQUEST, first.out);
+        rooms.join(ROOM, first);
+        broadcast("seen");
+        sessions.detach(token, first);
+        rooms.leaveAll(first);
+
+        rooms.publish(ROOM, "buffered 1", null);
+        broadcast("missed");
+        rooms.publish(ROOM, "buffered 2", null);
+
+        Member second = new Member();
+        assertEquals(token, sessions.handle(second, null, Frame.SESSION_REQUEST + " " + token + " 1", second.out));
+        rooms.publish(ROOM, "live", null);
+
+        assertEquals(List.of(reply(token, Frame.SESSION_RESUMED), "\0#2 missed"), second.lines());
+        assertEquals(List.of("buffered 1", "buffered 2", "live"), second.roomTexts());
+        assertEquals(List.of(), first.roomTexts());
+        assertEquals(List.of(ROOM), rooms.roomsOf(second));
+        assertEquals(1, rooms.getMemberCount(ROOM));
+    }
+
+    @Test
+    void clientAheadOfTheServerIsReset() {
+        broadcast("one");
+        Member member = new Member();
+
+        String token = sessions.handle(member, null, Frame.SESSION_REQUEST + " unknown 40", member.out);
+
+        assertNotEquals("unknown", token);
+        assertEquals(List.of(reply(token, Frame.SESSION_RESET), "\0#1 one"), member.lines());
+    }
+
+    @Test
+    void unknownTokenStartsANewSession() {
+        broadcast("one", "two");
+        Member member = new Member();
+
+        String token = sessions.handle(member, null, Frame.SESSION_REQUEST + " unknown 1", member.out);
+
+        assertNotEquals("unknown", token);
+        assertEquals(List.of(reply(token, Frame.SESSION_NEW), "\0#2 two"), member.lines());
+    }
+
+    @Test
+    void roomBufferOverflowKeepsTheNewestAndSaysSo() {
+        Member first = new Member();
+        String token = sessions.handle(first, null, Frame.SESSION_REQUEST, first.out);
+        rooms.join(ROOM, first);
+        sessions.detach(token, first);
+        rooms.leaveAll(first);
+        for (int i = 0; i < 300; i++) {
+            rooms.publish(ROOM, "m" + i, null);
+        }
+
+        Member second = new Member();
+        sessions.handle(second, null, Frame.SESSION_REQUEST + " " + token + " 0", second.out);
+
+        assertEquals("44 room messages were dropped while disconnected.", second.lines().getLast());
+        assertEquals(IntStream.range(44, 300).mapToObj(i -> "m" + i).toList(), second.roomTexts());
+    }
+
+    // Room messages keep arriving while the session is resumed: each one reaches the client exactly once and
+    // in publish order, whether it was buffered, forwarded by the placeholder or delivered directly.
+    @Test
+    void resumeDuringRoomTrafficNeitherRepeatsNorReorders() throws Exception {
+        Member first = new Member();
+        String token = sessions.handle(first, null, Frame.SESSION_REQUEST, first.out);
+        rooms.join(ROOM, first);
+        sessions.detach(token, first);
+        rooms.leaveAll(first);
+
+        int total = 20_000;
+        CountDownLatch started = new CountDownLatch(1);
+        Thread publisher = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < total; i++) {
+                rooms.publish(ROOM, String.valueOf(i), null);
+                if (i == 100) {
+                    started.countDown();
+                }
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Member second = new Member();
+        sessions.handle(second, null, Frame.SESSION_REQUEST + " " + token + " 0", second.out);
+        publisher.join();
+
+        List<String> received = second.roomTexts();
+        int firstReceived = Integer.parseInt(received.getFirst());
+        assertEquals(IntStream.range(firstReceived, total).mapToObj(String::valueOf).toList(), received);
+    }
+
+    @Test
+    void sessionRequestSkipsTheConnectReplay() throws Exception {
+        broadcast("one");
+        Member member = new Member();
+
+        SessionManager.PendingReplay pending = sessions.deferConnectReplay(member.out);
+        pending.skip();
+        Thread.sleep(SessionManager.CONNECT_REPLAY_DELAY_MILLIS * 2);
+        pending.send();
+
+        assertTrue(member.lines().isEmpty());
+    }
+
+    @Test
+    void connectReplayIsSentOnceAfterTheDelay() throws Exception {
+        broadcast("one");
+        Member member = new Member();
+
+        SessionManager.PendingReplay pending = sessions.deferConnectReplay(member.out);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (member.lines().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        pending.send();
+
+        // Unsequenced: the connection has no session.
+        assertEquals(List.of("one"), member.lines(false));
+    }
+
+    private void broadcast(String... texts) {
+        for (String text : texts) {
+            history.append(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String reply(String token, String status) {
+        return Frame.SESSION_REQUEST + " " + token + " " + status;
+    }
+
+    private static final class Member implements RoomMember {
+
+        private final List<OutboundMessage> sent = Collections.synchronizedList(new ArrayList<>());
+        private final List<RoomMessage> delivered = Collections.synchronizedList(new ArrayList<>());
+        private final Consumer<OutboundMessage> out = sent::add;
+
+        @Override
+        public void deliver(RoomMessage message) {
+            delivered.add(message);
+        }
+
+        List<String> lines() {
+            return lines(true);
+        }
+
+        List<String> lines(boolean sequenced) {
+            List<String> lines = new ArrayList<>();
+            synchronized (sent) {
+                for (OutboundMessage message : sent) {
+                    ByteArrayOutputStream line = new ByteArrayOutputStream();
+                    try {
+                        message.writeLine(line, sequenced);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    String text = line.toString(StandardCharsets.UTF_8);
+                    lines.add(text.substring(0, text.length() - 1));
+                }
+            }
+            return lines;
+        }
+
+        List<String> roomTexts() {
+            synchronized (delivered) {
+                return delivered.stream().map(RoomMessage::getText).toList();
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package it.polimi.ingsw.server.sync;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameStateSyncTest {
+
+    private final GameStateSync sync = new GameStateSync();
+
+    @Test
+    void subscriberLeavingWhilePublishedToDoesNotStopTheOthers() {
+        sync.publish("game", new byte[] {1});
+        List<StateUpdate> received = new ArrayList<>();
+        // Like a socket connection whose queue overflows: sending drops it from every game on the spot.
+        StateSubscriber dropped = new StateSubscriber() {
+            @Override
+            public void sendState(StateUpdate update) {
+                if (update.getVersion() > 1) {
+                    sync.leaveAll(this);
+                }
+            }
+        };
+        StateSubscriber healthy = received::add;
+        sync.join("game", dropped);
+        sync.join("game", healthy);
+
+        sync.publish("game", new byte[] {2});
+        sync.publish("game", new byte[] {3});
+
+        assertEquals(List.of(1L, 2L, 3L), received.stream().map(StateUpdate::getVersion).toList());
+    }
+
+    @Test
+    void subscriberRemovedByAnotherIsSkipped() {
+        sync.publish("game", new byte[] {1});
+        List<StateUpdate> received = new ArrayList<>();
+        StateSubscriber later = received::add;
+        StateSubscriber first = update -> {
+            if (update.getVersion() > 1) {
+                sync.leave("game", later);
+            }
+        };
+        sync.join("game", first);
+        sync.join("game", later);
+
+        sync.publish("game", new byte[] {2});
+
+        assertEquals(1, received.size());
+        assertTrue(received.getFirst().isSnapshot());
+    }
+}
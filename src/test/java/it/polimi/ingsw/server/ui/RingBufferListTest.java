@@ -0,0 +1,80 @@
+package it.polimi.ingsw.server.ui;
+
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Only javafx.collections is involved, so no toolkit or display is needed.
+class RingBufferListTest {
+
+    private static final int CAPACITY = 50;
+
+    private final RingBufferList<Integer> list = new RingBufferList<>(CAPACITY);
+    private final List<Integer> mirror = new ArrayList<>();
+    private int events;
+
+    // Replays every change on a plain list, checking that what each one says it removed is really there.
+    RingBufferListTest() {
+        list.addListener((ListChangeListener<Integer>) change -> {
+            events++;
+            while (change.next()) {
+                assertFalse(change.wasPermutated());
+                if (change.wasRemoved()) {
+                    List<Integer> removed = mirror.subList(change.getFrom(), change.getFrom() + change.getRemovedSize());
+                    assertEquals(removed, change.getRemoved());
+                    removed.clear();
+                }
+                if (change.wasAdded()) {
+                    mirror.addAll(change.getFrom(), change.getAddedSubList());
+                }
+            }
+        });
+    }
+
+    @Test
+    void randomBatchesMatchTheMirrorAndTheNewestItems() {
+        Random random = new Random(42);
+        List<Integer> appended = new ArrayList<>();
+        for (int round = 0; round < 200; round++) {
+            int batchSize = random.nextInt(round % 20 == 19 ? CAPACITY * 3 : CAPACITY / 2);
+            List<Integer> batch = IntStream.range(appended.size(), appended.size() + batchSize).boxed().toList();
+            int before = events;
+            list.appendAll(batch);
+            appended.addAll(batch);
+
+            assertEquals(batch.isEmpty() ? before : before + 1, events);
+            List<Integer> expected = appended.subList(Math.max(0, appended.size() - CAPACITY), appended.size());
+            assertEquals(expected, mirror);
+            assertEquals(expected, List.copyOf(list));
+        }
+    }
+
+    @Test
+    void removeAllItemsEmptiesTheMirrorAndAllowsRefilling() {
+        list.appendAll(IntStream.range(0, CAPACITY + 10).boxed().toList());
+        list.removeAllItems();
+
+        assertEquals(List.of(), mirror);
+        assertEquals(0, list.size());
+
+        list.appendAll(List.of(1, 2, 3));
+        assertEquals(List.of(1, 2, 3), mirror);
+        assertEquals(List.of(1, 2, 3), List.copyOf(list));
+    }
+
+    @Test
+    void indexOutsideTheContentsIsRejected() {
+        list.appendAll(List.of(1, 2));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(2));
+        assertThrows(IllegalArgumentException.class, () -> new RingBufferList<Integer>(0));
+    }
+}
@@ -0,0 +1,107 @@
+package it.polimi.ingsw.server.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClientRegistryTest {
+
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int ROUNDS = 20_000;
+    private static final int STABLE_MEMBERS = 16;
+
+    @Test
+    void addAndRemoveAreIdempotent() {
+        ClientRegistry<String> registry = new ClientRegistry<>();
+        assertTrue(registry.add("a"));
+        assertFalse(registry.add("a"));
+        assertEquals(List.of("a"), registry.snapshot());
+        assertTrue(registry.remove("a"));
+        assertFalse(registry.remove("a"));
+        assertTrue(registry.isEmpty());
+        assertEquals(List.of(), registry.snapshot());
+    }
+
+    // Writers churn their own members while readers iterate; every snapshot must hold the stable members,
+    // and once the writers are done the registry holds exactly what is left.
+    @Test
+    void concurrentChurnAndIteration() throws Exception {
+        ClientRegistry<String> registry = new ClientRegistry<>();
+        for (int i = 0; i < STABLE_MEMBERS; i++) {
+            registry.add("stable-" + i);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                int writer = w;
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ROUNDS; i++) {
+                        String member = "writer-" + writer + "-" + i;
+                        assertTrue(registry.add(member));
+                        // Every other member stays, so the final contents are known.
+                        if (i % 2 == 0) {
+                            assertTrue(registry.remove(member));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < READERS; r++) {
+                readers.add(executor.submit(() -> {
+                    start.await();
+                    while (writing.get()) {
+                        int stable = 0;
+                        for (String member : registry) {
+                            if (member.startsWith("stable-")) {
+                                stable++;
+                            }
+                        }
+                        assertEquals(STABLE_MEMBERS, stable);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            for (Future<?> reader : readers) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < STABLE_MEMBERS; i++) {
+            expected.add("stable-" + i);
+        }
+        for (int w = 0; w < WRITERS; w++) {
+            for (int i = 1; i < ROUNDS; i += 2) {
+                expected.add("writer-" + w + "-" + i);
+            }
+        }
+        assertEquals(expected.size(), registry.size());
+        assertEquals(expected, new HashSet<>(registry.snapshot()));
+    }
+}